@@ -0,0 +1,142 @@
+package jss.webframework.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor - finds controllers ({@code @Path}, {@code @PathError})
+ * at compile time and generates registry of them
+ * ({@code jss.webframework.ControllerRegistry}), so DispatcherServlet does not
+ * need to scan classpath at startup.
+ * 
+ * @author lukas
+ */
+@SupportedAnnotationTypes({ ControllerRegistryProcessor.PATH, ControllerRegistryProcessor.PATH_ERROR })
+public class ControllerRegistryProcessor extends AbstractProcessor {
+	static final String PATH = "jss.webframework.Path";
+	static final String PATH_ERROR = "jss.webframework.PathError";
+
+	private static final String REGISTRY_INTERFACE = "jss.webframework.ControllerRegistry";
+	private static final String REGISTRY_CLASS = "JssControllerRegistry";
+
+	private final Set<String> controllers = new TreeSet<>();
+	private boolean generated = false;
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		Set<String> found = new TreeSet<>();
+		for (TypeElement annotation : annotations) {
+			for (Element e : roundEnv.getElementsAnnotatedWith(annotation)) {
+				if (e.getKind() != ElementKind.CLASS) {
+					continue;
+				}
+
+				if (!e.getModifiers().contains(Modifier.PUBLIC) || e.getModifiers().contains(Modifier.ABSTRACT)) {
+					processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+							"Controller must be public and not abstract - skipped", e);
+					continue;
+				}
+
+				found.add(((TypeElement) e).getQualifiedName().toString());
+			}
+		}
+
+		if (found.isEmpty()) {
+			return false;
+		}
+
+		// registry is generated in first round with controllers (source generated in
+		// last round would not be compiled)
+		if (generated) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Controllers in generated sources are not supported: " + found);
+			return false;
+		}
+
+		controllers.addAll(found);
+		try {
+			generate();
+			generated = true;
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Cannot generate controller registry: " + e.getMessage());
+		}
+
+		return false;
+	}
+
+	/**
+	 * Generates registry class, in common package of controllers, and service
+	 * file for it
+	 */
+	private void generate() throws IOException {
+		String pkg = commonPackage();
+		String className = pkg.isEmpty() ? REGISTRY_CLASS : pkg + "." + REGISTRY_CLASS;
+
+		JavaFileObject source = processingEnv.getFiler().createSourceFile(className);
+		try (Writer w = source.openWriter()) {
+			if (!pkg.isEmpty()) {
+				w.write("package " + pkg + ";\n\n");
+			}
+			w.write("/**\n * Generated by " + getClass().getName() + " - do not edit\n */\n");
+			w.write("public final class " + REGISTRY_CLASS + " implements " + REGISTRY_INTERFACE + " {\n\n");
+			w.write("\t@Override\n");
+			w.write("\tpublic Class<?>[] getControllers() {\n");
+			w.write("\t\treturn new Class<?>[] {\n");
+			for (String c : controllers) {
+				w.write("\t\t\t\t" + c + ".class,\n");
+			}
+			w.write("\t\t};\n");
+			w.write("\t}\n\n");
+			w.write("}\n");
+		}
+
+		FileObject services = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+				"META-INF/services/" + REGISTRY_INTERFACE);
+		try (Writer w = services.openWriter()) {
+			w.write(className + "\n");
+		}
+	}
+
+	/**
+	 * Longest package common for all controllers
+	 */
+	private String commonPackage() {
+		String common = null;
+		for (String c : controllers) {
+			String pkg = processingEnv.getElementUtils()
+					.getPackageOf(processingEnv.getElementUtils().getTypeElement(c)).getQualifiedName().toString();
+
+			if (common == null) {
+				common = pkg;
+			} else {
+				while (!common.isEmpty() && !pkg.equals(common) && !pkg.startsWith(common + ".")) {
+					int dot = common.lastIndexOf('.');
+					common = dot < 0 ? "" : common.substring(0, dot);
+				}
+			}
+		}
+		return common;
+	}
+
+}
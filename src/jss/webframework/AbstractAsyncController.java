@@ -0,0 +1,74 @@
+package jss.webframework;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Abstrakcyjny kontroler asynchroniczny - praca kontrolera zwraca przyszły
+ * widok, a wątek kontenera jest zwalniany do czasu jego otrzymania (Servlet
+ * async). Widok jest wysyłany, błędy obsługiwane, a {@link #endJob()}
+ * wywoływane po zakończeniu pracy. Czas oczekiwania określa
+ * {@link WebAppConfig#getAsyncTimeout()} - po jego upływie wysyłany jest błąd
+ * 503.
+ *
+ * @author lukas
+ */
+public abstract class AbstractAsyncController extends AbstractController {
+
+	/**
+	 * Konstruktor
+	 *
+	 * @param data dane do kontrolera
+	 * @throws WebAppException błąd
+	 */
+	public AbstractAsyncController(ControllerData data) throws WebAppException {
+		super(data);
+	}
+
+	/**
+	 * Rozpoczyna pracę kontrolera (nie może czekać na jej wynik)
+	 *
+	 * @return przyszły widok (widok może być null, gdy brak widoku)
+	 * @throws WebAppException błąd
+	 */
+	public abstract CompletionStage<AbstractView> doJobAsync() throws WebAppException;
+
+	/**
+	 * Wykonuje pracę kontrolera synchronicznie, czekając na wynik - gdy servlet
+	 * nie obsługuje async, lub przetwarzanie async już trwa (np.
+	 * {@link Path#asyncBody()})
+	 */
+	@Override
+	public AbstractView doJob() throws WebAppException {
+		CompletionStage<AbstractView> stage = doJobAsync();
+		if (stage == null) {
+			return null;
+		}
+
+		long timeout = data.getDispatcher().getAppConfig().getAsyncTimeout();
+		try {
+			if (timeout > 0) {
+				return stage.toCompletableFuture().get(timeout, TimeUnit.MILLISECONDS);
+			}
+			return stage.toCompletableFuture().get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof WebAppException) {
+				throw (WebAppException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new WebAppException(cause.getMessage(), cause);
+		} catch (TimeoutException e) {
+			throw new WebAppException("Controller timeout!", HttpServletResponse.SC_SERVICE_UNAVAILABLE, e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new WebAppException(e.getMessage(), e);
+		}
+	}
+
+}
@@ -1,12 +1,15 @@
 package jss.webframework;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
 /**
@@ -35,6 +38,31 @@ public abstract class AbstractController implements ParameterLoader, Translation
 	 */
 	public abstract AbstractView doJob() throws WebAppException;
 
+	/**
+	 * ETag zasobu, sprawdzany przed {@link #doJob()} - gdy pasuje do
+	 * If-None-Match, odpowiedzią jest 304 bez wykonania pracy kontrolera (tylko
+	 * dla GET i HEAD)
+	 * 
+	 * @return ETag (w cudzysłowach, np. {@code "v12"} lub {@code W/"v12"}), lub
+	 *         null gdy brak
+	 * @throws WebAppException błąd
+	 */
+	public String getETag() throws WebAppException {
+		return null;
+	}
+
+	/**
+	 * Czas ostatniej modyfikacji zasobu, sprawdzany przed {@link #doJob()} z
+	 * If-Modified-Since - gdy zasób nie był zmieniony, odpowiedzią jest 304 bez
+	 * wykonania pracy kontrolera (tylko dla GET i HEAD)
+	 * 
+	 * @return czas w milisekundach, lub -1 gdy nieznany
+	 * @throws WebAppException błąd
+	 */
+	public long getLastModified() throws WebAppException {
+		return -1;
+	}
+
 	/**
 	 * Koniec pracy kontrolera
 	 * 
@@ -45,7 +73,9 @@ public abstract class AbstractController implements ParameterLoader, Translation
 	}
 
 	/**
-	 * Przekierowanie
+	 * Przekierowanie do pierwszej ścieżki kontrolera bez zmiennych ścieżki. Gdy
+	 * wszystkie ścieżki kontrolera mają zmienne, przekierowanie nie jest wysyłane
+	 * - należy użyć {@link #redirect(String)}.
 	 * 
 	 * @param controller kontroler do przekierowania
 	 * @throws WebAppException błąd
@@ -123,7 +153,7 @@ public abstract class AbstractController implements ParameterLoader, Translation
 	 */
 	@Override
 	public RequestParam getParam(String name) {
-		return data.getParams().get(name);
+		return data.getParam(name);
 	}
 
 	/**
@@ -135,40 +165,182 @@ public abstract class AbstractController implements ParameterLoader, Translation
 	 */
 	@Override
 	public String getSingleParam(String name) {
-		if (data.getParams().containsKey(name)) {
-			return data.getParams().get(name).getSingleValue();
-		} else {
-			return null;
-		}
+		return data.getSingleParam(name);
+	}
+
+	/**
+	 * Zwraca pojedyńczy parametr jako int
+	 * 
+	 * @param name nazwa parametru
+	 * @param def  wartość domyślna
+	 * @return wartość, lub wartość domyślna gdy brak parametru lub nie jest liczbą
+	 */
+	@Override
+	public int getInt(String name, int def) {
+		return data.getInt(name, def);
+	}
+
+	/**
+	 * Zwraca pojedyńczy parametr jako long
+	 * 
+	 * @param name nazwa parametru
+	 * @param def  wartość domyślna
+	 * @return wartość, lub wartość domyślna gdy brak parametru lub nie jest liczbą
+	 */
+	@Override
+	public long getLong(String name, long def) {
+		return data.getLong(name, def);
+	}
+
+	/**
+	 * Zwraca pojedyńczy parametr jako boolean
+	 * 
+	 * @param name nazwa parametru
+	 * @param def  wartość domyślna
+	 * @return wartość, lub wartość domyślna gdy brak parametru lub jest
+	 *         nieprawidłowy
+	 */
+	@Override
+	public boolean getBoolean(String name, boolean def) {
+		return data.getBoolean(name, def);
+	}
+
+	/**
+	 * Zwraca pojedyńczy parametr jako stałą typu wyliczeniowego
+	 * 
+	 * @param name nazwa parametru
+	 * @param type typ wyliczeniowy
+	 * @param def  wartość domyślna
+	 * @return wartość, lub wartość domyślna gdy brak parametru lub stałej
+	 */
+	@Override
+	public <E extends Enum<E>> E getEnum(String name, Class<E> type, E def) {
+		return data.getEnum(name, type, def);
+	}
+
+	/**
+	 * Tworzy obiekt formularza i wypełnia go parametrami
+	 * 
+	 * @param type klasa formularza (z konstruktorem bezparametrowym)
+	 * @return obiekt formularza
+	 */
+	@Override
+	public <T> T bindParams(Class<T> type) {
+		return data.bindParams(type);
+	}
+
+	/**
+	 * @return zmienne ścieżki
+	 */
+	@Override
+	public PathVariables getPathVariables() {
+		return data.getPathVariables();
+	}
+
+	/**
+	 * Zwraca wartość zmiennej ścieżki po indeksie
+	 * 
+	 * @param index indeks zmiennej
+	 * @return wartość zmiennej
+	 */
+	@Override
+	public String getPathVariable(int index) {
+		return data.getPathVariable(index);
+	}
+
+	/**
+	 * Zwraca wartość zmiennej ścieżki po nazwie, lub null gdy jej nie znaleziono
+	 * 
+	 * @param name nazwa zmiennej
+	 * @return wartość zmiennej lub null
+	 */
+	@Override
+	public String getPathVariable(String name) {
+		return data.getPathVariable(name);
 	}
 
 	/**
 	 * Zwraca dane zapytania w postaci tekstowej
 	 * 
-	 * @param request zapytanie
-	 * @return treść zapytania jako tekst
-	 * @throws IOException błąd we/wy
+	 * @return treść zapytania jako tekst
+	 * @throws WebAppException błąd we/wy, lub przekroczono maksymalny rozmiar
+	 *                         treści (kod 413)
 	 */
 	public String getRequestData() throws WebAppException {
 		try {
 			return data.getDispatcher().getRequestData(data.getRequest());
 		} catch (IOException e) {
-			throw new WebAppException(e.getMessage(), e);
+			throw requestDataException(e);
 		}
 	}
 
 	/**
-	 * Zwraca dane zapytania w postaci binarner
+	 * Zwraca dane zapytania w postaci binarnej
 	 * 
-	 * @param request zapytanie
 	 * @return binarne dane zapytania
-	 * @throws IOException błąd we/wy
+	 * @throws WebAppException błąd we/wy, lub przekroczono maksymalny rozmiar
+	 *                         treści (kod 413)
 	 */
 	public byte[] getRequestBinaryData() throws WebAppException {
 		try {
 			return data.getDispatcher().getRequestBinaryData(data.getRequest());
 		} catch (IOException e) {
-			throw new WebAppException(e.getMessage(), e);
+			throw requestDataException(e);
+		}
+	}
+
+	/**
+	 * Zwraca dane zapytania jako bufor (dane od pozycji 0 do limitu), bez
+	 * dodatkowego kopiowania
+	 * 
+	 * @return binarne dane zapytania
+	 * @throws WebAppException błąd we/wy, lub przekroczono maksymalny rozmiar
+	 *                         treści (kod 413)
+	 */
+	public ByteBuffer getRequestByteBuffer() throws WebAppException {
+		try {
+			return data.getDispatcher().getRequestByteBuffer(data.getRequest());
+		} catch (IOException e) {
+			throw requestDataException(e);
+		}
+	}
+
+	/**
+	 * Zwraca strumień treści zapytania, z limitem maksymalnego rozmiaru (po
+	 * przekroczeniu czytanie zgłasza {@link RequestTooLargeException})
+	 * 
+	 * @return strumień treści
+	 * @throws WebAppException błąd we/wy, lub przekroczono maksymalny rozmiar
+	 *                         treści (kod 413)
+	 */
+	public InputStream getRequestStream() throws WebAppException {
+		try {
+			return data.getDispatcher().getRequestStream(data.getRequest());
+		} catch (IOException e) {
+			throw requestDataException(e);
+		}
+	}
+
+	private static WebAppException requestDataException(IOException e) {
+		if (e instanceof RequestTooLargeException) {
+			return new WebAppException(e.getMessage(), HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, e);
+		}
+		return new WebAppException(e.getMessage(), e);
+	}
+
+	/**
+	 * Zwraca części zapytania multipart/form-data, odczytywane strumieniowo - pliki
+	 * można czytać w trakcie przesyłania, bez plików tymczasowych. Nie można łączyć
+	 * z odczytem parametrów ({@link #getParams()}).
+	 * 
+	 * @return iterator części, w kolejności przesłania
+	 * @throws WebAppException zapytanie nie jest multipart/form-data
+	 */
+	public MultipartIterator getMultipartParts() throws WebAppException {
+		try {
+			return data.getDispatcher().getMultipartParts(data.getRequest());
+		} catch (IOException e) {
+			throw new WebAppException(e.getMessage(), HttpServletResponse.SC_BAD_REQUEST, e);
 		}
 	}
 
@@ -201,7 +373,7 @@ public abstract class AbstractController implements ParameterLoader, Translation
 	 */
 	@Override
 	public ResourceBundle getTranslations(String file) {
-		return getTranslations(file, data.getLocale());
+		return data.getTranslations(file);
 	}
 
 	/**
@@ -209,12 +381,7 @@ public abstract class AbstractController implements ParameterLoader, Translation
 	 */
 	@Override
 	public ResourceBundle getTranslations(String file, Locale locale) {
-		LocaleBundle bundle = data.getDispatcher().getLocaleBundle();
-		if (bundle == null) {
-			throw new IllegalStateException("Translations not initialized!");
-		}
-
-		return bundle.getTranslations(file, locale);
+		return data.getTranslations(file, locale);
 	}
 
 }
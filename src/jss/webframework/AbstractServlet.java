@@ -1,14 +1,17 @@
 package jss.webframework;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.URLDecoder;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -30,6 +33,12 @@ import jss.webframework.RequestParam.FileInfo;
 public abstract class AbstractServlet extends HttpServlet {
 	private static final long serialVersionUID = -712622573350816127L;
 
+	/**
+	 * Atrybut zapytania z treścią wczytaną przed wywołaniem kontrolera
+	 * ({@link java.nio.ByteBuffer})
+	 */
+	static final String ATTR_REQUEST_BODY = "jss.webframework.request_body";
+
 	/**
 	 * Konstruktor
 	 */
@@ -75,6 +84,38 @@ public abstract class AbstractServlet extends HttpServlet {
 		requestProc(request, response, HttpMethodType.DELETE);
 	}
 
+	protected void doHead(HttpServletRequest request, HttpServletResponse response)
+			throws ServletException, IOException {
+
+		requestProc(request, response, HttpMethodType.HEAD);
+	}
+
+	protected void doOptions(HttpServletRequest request, HttpServletResponse response)
+			throws ServletException, IOException {
+
+		requestProc(request, response, HttpMethodType.OPTIONS);
+	}
+
+	protected void doPatch(HttpServletRequest request, HttpServletResponse response)
+			throws ServletException, IOException {
+
+		requestProc(request, response, HttpMethodType.PATCH);
+	}
+
+	/**
+	 * Adds PATCH method (not supported by HttpServlet)
+	 */
+	@Override
+	protected void service(HttpServletRequest request, HttpServletResponse response)
+			throws ServletException, IOException {
+
+		if (HttpMethodType.PATCH.name().equals(request.getMethod())) {
+			doPatch(request, response);
+		} else {
+			super.service(request, response);
+		}
+	}
+
 	/**
 	 * Add characters encoding
 	 * 
@@ -107,23 +148,33 @@ public abstract class AbstractServlet extends HttpServlet {
 			throws ServletException, IOException;
 
 	/**
-	 * Zwraca dane zapytania w postaci tekstowej
+	 * Maksymalny rozmiar treści zapytania, czytanej przez metody getRequest...
+	 * 
+	 * @return rozmiar w bajtach, lub -1 gdy bez limitu
+	 */
+	protected long getMaxBodySize() {
+		return -1;
+	}
+
+	/**
+	 * Zwraca dane zapytania w postaci tekstowej (w kodowaniu zapytania)
 	 * 
 	 * @param request zapytanie
-	 * @return treść zapytania jako tekst
-	 * @throws IOException błąd we/wy
+	 * @return treść zapytania jako tekst
+	 * @throws IOException              błąd we/wy
+	 * @throws RequestTooLargeException przekroczono maksymalny rozmiar treści
 	 */
 	public String getRequestData(HttpServletRequest request) throws IOException {
-		StringBuilder sb = new StringBuilder();
-		String line;
-
-		BufferedReader reader = request.getReader();
+		String charsetName = request.getCharacterEncoding();
+		Charset charset = charsetName != null ? Charset.forName(charsetName) : StandardCharsets.UTF_8;
 
-		while ((line = reader.readLine()) != null) {
-			sb.append(line);
+		ByteBuffer body = getPreloadedBody(request);
+		if (body != null) {
+			return charset.decode(body).toString();
 		}
 
-		return sb.toString();
+		return RequestBodyReader.read(request.getInputStream(), request.getContentLengthLong(), getMaxBodySize(),
+				(buffer, length, pooled) -> new String(buffer, 0, length, charset));
 	}
 
 	/**
@@ -131,22 +182,93 @@ public abstract class AbstractServlet extends HttpServlet {
 	 * 
 	 * @param request zapytanie
 	 * @return binarne dane zapytania
-	 * @throws IOException błąd we/wy
+	 * @throws IOException              błąd we/wy
+	 * @throws RequestTooLargeException przekroczono maksymalny rozmiar treści
 	 */
 	public byte[] getRequestBinaryData(HttpServletRequest request) throws IOException {
-		final int BUFFER_BYTES = 4096;
-		byte[] chunk = new byte[BUFFER_BYTES];
-		int bytesRead;
+		ByteBuffer body = getPreloadedBody(request);
+		if (body != null) {
+			byte[] data = new byte[body.remaining()];
+			body.get(data);
+			return data;
+		}
 
-		InputStream stream = request.getInputStream();
-		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		return RequestBodyReader.read(request.getInputStream(), request.getContentLengthLong(), getMaxBodySize(),
+				(buffer, length, pooled) -> !pooled && length == buffer.length ? buffer
+						: Arrays.copyOf(buffer, length));
+	}
 
-		while ((bytesRead = stream.read(chunk)) > 0) {
-			outputStream.write(chunk, 0, bytesRead);
+	/**
+	 * Zwraca dane zapytania jako bufor (bez kopiowania do tablicy o dokładnym
+	 * rozmiarze). Dane są od pozycji 0 do limitu bufora. Treść wczytana przed
+	 * wywołaniem kontrolera jest zwracana jako bufor tylko do odczytu.
+	 * 
+	 * @param request zapytanie
+	 * @return binarne dane zapytania
+	 * @throws IOException              błąd we/wy
+	 * @throws RequestTooLargeException przekroczono maksymalny rozmiar treści
+	 */
+	public ByteBuffer getRequestByteBuffer(HttpServletRequest request) throws IOException {
+		ByteBuffer body = getPreloadedBody(request);
+		if (body != null) {
+			return body.asReadOnlyBuffer();
 		}
 
-		stream.close();
-		return outputStream.toByteArray();
+		return RequestBodyReader.read(request.getInputStream(), request.getContentLengthLong(), getMaxBodySize(),
+				(buffer, length, pooled) -> pooled ? ByteBuffer.wrap(Arrays.copyOf(buffer, length))
+						: ByteBuffer.wrap(buffer, 0, length));
+	}
+
+	/**
+	 * Zwraca strumień treści zapytania, z limitem maksymalnego rozmiaru
+	 * 
+	 * @param request zapytanie
+	 * @return strumień treści
+	 * @throws IOException              błąd we/wy
+	 * @throws RequestTooLargeException przekroczono maksymalny rozmiar treści
+	 *                                  (również podczas czytania strumienia)
+	 */
+	public InputStream getRequestStream(HttpServletRequest request) throws IOException {
+		ByteBuffer body = getPreloadedBody(request);
+		if (body != null) {
+			return new ByteArrayInputStream(body.array(), body.arrayOffset() + body.position(), body.remaining());
+		}
+
+		long maxSize = getMaxBodySize();
+		if (maxSize < 0) {
+			return request.getInputStream();
+		}
+		if (request.getContentLengthLong() > maxSize) {
+			throw new RequestTooLargeException(maxSize);
+		}
+		return RequestBodyReader.limit(request.getInputStream(), maxSize);
+	}
+
+	/**
+	 * Zwraca części zapytania multipart/form-data, odczytywane strumieniowo (bez
+	 * buforowania całego zapytania). Nie można łączyć z odczytem parametrów.
+	 * 
+	 * @param request zapytanie
+	 * @return iterator części, w kolejności przesłania
+	 * @throws IOException zapytanie nie jest multipart/form-data
+	 */
+	public MultipartIterator getMultipartParts(HttpServletRequest request) throws IOException {
+		if (!isMultipart(request)) {
+			throw new IOException("Request is not multipart/form-data!");
+		}
+
+		ByteBuffer body = getPreloadedBody(request);
+		InputStream input = body != null ? getRequestStream(request) : request.getInputStream();
+		return MultipartIterator.of(input, request.getContentType());
+	}
+
+	/**
+	 * Treść zapytania wczytana przed wywołaniem kontrolera (asynchronicznie), lub
+	 * null
+	 */
+	static ByteBuffer getPreloadedBody(HttpServletRequest request) {
+		Object body = request.getAttribute(ATTR_REQUEST_BODY);
+		return body instanceof ByteBuffer ? ((ByteBuffer) body).duplicate() : null;
 	}
 
 	/**
@@ -160,13 +282,31 @@ public abstract class AbstractServlet extends HttpServlet {
 	protected Map<String, RequestParam> processParameters(HttpServletRequest request)
 			throws IOException, ServletException {
 
+		return processParameters(request, false);
+	}
+
+	/**
+	 * Przetwarzanie parametrów
+	 * 
+	 * @param request     zapytanie
+	 * @param formDecoder czy dekodować query string i treść
+	 *                    application/x-www-form-urlencoded własnym dekoderem
+	 *                    (zamiast mapy parametrów kontenera)?
+	 * @return przetworzona mapa parametrów
+	 * @throws IOException
+	 * @throws ServletException
+	 */
+	protected Map<String, RequestParam> processParameters(HttpServletRequest request, boolean formDecoder)
+			throws IOException, ServletException {
+
 		Map<String, RequestParam> map = new HashMap<>();
 
 		// is multipart?
-		if (request.getContentType() != null
-				&& request.getContentType().toLowerCase().indexOf("multipart/form-data") > -1) {
+		if (isMultipart(request)) {
 
-			Collection<Part> parts = request.getParts();
+			// preloaded body - stream of container is already read
+			Collection<Part> parts = getPreloadedBody(request) != null ? getPreloadedParts(request)
+					: request.getParts();
 			for (Part part : parts) {
 				String name = part.getName();
 				String fileName = part.getSubmittedFileName();
@@ -183,16 +323,10 @@ public abstract class AbstractServlet extends HttpServlet {
 						map.put(name, reqParam);
 					}
 				} else if (fileName == null) {// nie jest to plik tylko wartość
-					try (BufferedReader reader = new BufferedReader(new InputStreamReader(part.getInputStream()))) {
-						String line;
-						StringBuilder sb = new StringBuilder();
-						while ((line = reader.readLine()) != null) {
-							sb.append(line);
-						}
-						String value = sb.toString();
+					try (InputStream input = part.getInputStream()) {
+						String value = new String(input.readAllBytes(), StandardCharsets.UTF_8);
 
 						if (map.containsKey(name)) {// parametr istnieje, dodaj wartość do listy
-							value = URLDecoder.decode(value, StandardCharsets.UTF_8);// dekodowanie URL
 							map.get(name).getValuesInternalList().add(value);
 						} else {// parametr nie istnieje, utwórz nowy
 							RequestParam reqParam = new RequestParam(name, new String[] { value });
@@ -203,6 +337,31 @@ public abstract class AbstractServlet extends HttpServlet {
 			}
 		} // is multipart?
 
+		if (formDecoder) {// own decoder - query string and form body
+			String charsetName = request.getCharacterEncoding();
+			Charset charset = charsetName != null ? Charset.forName(charsetName) : StandardCharsets.UTF_8;
+
+			String query = request.getQueryString();
+			if (query != null) {
+				byte[] data = query.getBytes(charset);
+				FormDecoder.decode(data, data.length, charset, map);
+			}
+
+			String contentType = request.getContentType();
+			if (contentType != null
+					&& contentType.toLowerCase().startsWith("application/x-www-form-urlencoded")) {
+				ByteBuffer body = getRequestByteBuffer(request);// decoded in place
+				if (body.isReadOnly()) {// preloaded body - decode copy
+					byte[] data = new byte[body.remaining()];
+					body.get(data);
+					body = ByteBuffer.wrap(data);
+				}
+				FormDecoder.decode(body.array(), body.limit(), charset, map);
+			}
+
+			return map;
+		}
+
 		// other data - no multipart, or GET parameters in multipart
 		Map<String, String[]> parameterMap = request.getParameterMap();
 		for (Entry<String, String[]> param : parameterMap.entrySet()) {
@@ -216,4 +375,29 @@ public abstract class AbstractServlet extends HttpServlet {
 		return map;
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Części zapytania multipart/form-data z treści wczytanej przed wywołaniem
+	 * kontrolera (kontener nie może ich odczytać z przeczytanego strumienia)
+	 */
+	private Collection<Part> getPreloadedParts(HttpServletRequest request) throws IOException {
+		List<Part> parts = new ArrayList<>();
+		try {
+			MultipartIterator iterator = getMultipartParts(request);
+			while (iterator.hasNext()) {
+				parts.add(new PreloadedPart(iterator.next()));
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return parts;
+	}
+
+	/**
+	 * Is request multipart/form-data?
+	 */
+	static boolean isMultipart(HttpServletRequest request) {
+		String contentType = request.getContentType();
+		return contentType != null && contentType.toLowerCase().indexOf("multipart/form-data") > -1;
+	}
+
+}
@@ -1,5 +1,9 @@
 package jss.webframework;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
 /**
  * Widok abstrakcyjny
  * 
@@ -11,9 +15,19 @@ public abstract class AbstractView {
 	protected String jspFile;
 	protected String jspPrependFile;
 	protected String jspAppendFile;
+	protected String fragmentCacheKey;
+	protected long fragmentCacheTtl = 300;
 	protected String content;
 	protected byte[] contentBytes;
+	protected Object json;
+	protected StreamWriter streamWriter;
+	protected TextStreamWriter textStreamWriter;
+	protected Integer flushInterval;
+	protected java.nio.file.Path file;
+	protected String downloadFileName;
+	protected boolean immutable;
 	protected ViewType viewType;
+	private volatile Compression.Cache compressionCache;
 
 	public AbstractView(ViewType viewType) {
 		this.viewType = viewType;
@@ -89,6 +103,37 @@ public abstract class AbstractView {
 		this.jspAppendFile = jspAppendFile;
 	}
 
+	/**
+	 * Klucz pamięci podręcznej plików prepend i append (np. język i rola
+	 * użytkownika), lub null gdy są wykonywane przy każdym zapytaniu
+	 */
+	public String getFragmentCacheKey() {
+		return fragmentCacheKey;
+	}
+
+	/**
+	 * Ustaw klucz pamięci podręcznej plików prepend i append - wynik pliku JSP
+	 * jest zapamiętywany dla klucza (np. język i rola użytkownika) i wysyłany bez
+	 * wykonywania JSP. Klucz musi obejmować wszystko, od czego zależy wynik.
+	 */
+	public void setFragmentCacheKey(String fragmentCacheKey) {
+		this.fragmentCacheKey = fragmentCacheKey;
+	}
+
+	/**
+	 * Czas ważności zapamiętanych plików prepend i append (w sekundach)
+	 */
+	public long getFragmentCacheTtl() {
+		return fragmentCacheTtl;
+	}
+
+	/**
+	 * Ustaw czas ważności zapamiętanych plików prepend i append (w sekundach)
+	 */
+	public void setFragmentCacheTtl(long fragmentCacheTtl) {
+		this.fragmentCacheTtl = fragmentCacheTtl;
+	}
+
 	/**
 	 * Odpowiedź (jako napis)
 	 */
@@ -117,6 +162,128 @@ public abstract class AbstractView {
 		this.contentBytes = contentBytes;
 	}
 
+	/**
+	 * Obiekt wysyłany jako JSON, dla {@link ViewType#JSON}
+	 */
+	public Object getJson() {
+		return json;
+	}
+
+	/**
+	 * Ustaw obiekt wysyłany jako JSON, dla {@link ViewType#JSON} - napisy, liczby,
+	 * wartości logiczne, enumy, mapy, kolekcje, tablice i obiekty (zapisywane są
+	 * ich pola, oprócz statycznych i transient)
+	 */
+	public void setJson(Object json) {
+		this.json = json;
+	}
+
+	/**
+	 * Odpowiedź zapisywana strumieniowo (binarnie), dla {@link ViewType#STREAM}
+	 */
+	public StreamWriter getStreamWriter() {
+		return streamWriter;
+	}
+
+	/**
+	 * Ustaw odpowiedź zapisywaną strumieniowo (binarnie), dla
+	 * {@link ViewType#STREAM}
+	 */
+	public void setStreamWriter(StreamWriter streamWriter) {
+		this.streamWriter = streamWriter;
+	}
+
+	/**
+	 * Odpowiedź zapisywana strumieniowo (tekstowo), dla {@link ViewType#STREAM}
+	 */
+	public TextStreamWriter getTextStreamWriter() {
+		return textStreamWriter;
+	}
+
+	/**
+	 * Ustaw odpowiedź zapisywaną strumieniowo (tekstowo), dla
+	 * {@link ViewType#STREAM}
+	 */
+	public void setTextStreamWriter(TextStreamWriter textStreamWriter) {
+		this.textStreamWriter = textStreamWriter;
+	}
+
+	/**
+	 * Co ile bajtów (znaków) wysyłać dane odpowiedzi strumieniowej do klienta (lub
+	 * null, gdy wartość z konfiguracji)
+	 */
+	public Integer getFlushInterval() {
+		return flushInterval;
+	}
+
+	/**
+	 * Ustaw co ile bajtów (znaków) wysyłać dane odpowiedzi strumieniowej do klienta
+	 * (lub null, gdy wartość z konfiguracji)
+	 */
+	public void setFlushInterval(Integer flushInterval) {
+		this.flushInterval = flushInterval;
+	}
+
+	/**
+	 * Plik wysyłany w odpowiedzi, dla {@link ViewType#FILE}
+	 */
+	public java.nio.file.Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Ustaw plik wysyłany w odpowiedzi, dla {@link ViewType#FILE}
+	 */
+	public void setFile(java.nio.file.Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Nazwa pliku do pobrania (nagłówek Content-Disposition), lub null gdy plik
+	 * jest wyświetlany w przeglądarce
+	 */
+	public String getDownloadFileName() {
+		return downloadFileName;
+	}
+
+	/**
+	 * Ustaw nazwę pliku do pobrania (nagłówek Content-Disposition), lub null gdy
+	 * plik jest wyświetlany w przeglądarce
+	 */
+	public void setDownloadFileName(String downloadFileName) {
+		this.downloadFileName = downloadFileName;
+	}
+
+	/**
+	 * Czy widok jest niezmienny? (treść nie jest zmieniana po utworzeniu - może
+	 * być wysyłana wielokrotnie, skompresowana treść jest zapamiętywana)
+	 */
+	public boolean isImmutable() {
+		return immutable;
+	}
+
+	/**
+	 * Ustaw czy widok jest niezmienny (treść nie jest zmieniana po utworzeniu -
+	 * może być wysyłana wielokrotnie, skompresowana treść jest zapamiętywana)
+	 */
+	public void setImmutable(boolean immutable) {
+		this.immutable = immutable;
+	}
+
+	/**
+	 * Skompresowane warianty treści (dla widoku niezmiennego)
+	 * 
+	 * @param content treść widoku (napis lub tablica bajtów)
+	 */
+	Compression.Cache getCompressionCache(Object content) {
+		Compression.Cache cache = compressionCache;
+		if (cache == null || !cache.isFor(content)) {// treść zmieniona - nowa pamięć
+			cache = new Compression.Cache(content);
+			compressionCache = cache;
+		}
+		return cache;
+	}
+
 	/**
 	 * Typ odpowiedzi widoku
 	 */
@@ -133,7 +300,34 @@ public abstract class AbstractView {
 		JSP, // plik JSP
 		STRING_CONTENT, // string
 		BYTES_CONTENT, // strumień bajtów
+		STREAM, // zapisywana strumieniowo, przez StreamWriter lub TextStreamWriter
+		JSON, // obiekt zapisywany jako JSON (UTF-8)
+		FILE, // plik - z obsługą Range, ETag i Last-Modified
 		NO_CONTENT;// brak danych dla odpowiedzi
 	}
 
+	/**
+	 * Zapis odpowiedzi strumieniowej - wywoływany po ustawieniu nagłówków i kodu
+	 * odpowiedzi
+	 */
+	public interface StreamWriter {
+		/**
+		 * @param out strumień odpowiedzi (nie trzeba zamykać)
+		 * @throws ClientAbortException klient przerwał połączenie
+		 */
+		void write(OutputStream out) throws IOException, WebAppException;
+	}
+
+	/**
+	 * Zapis odpowiedzi strumieniowej tekstowej - wywoływany po ustawieniu
+	 * nagłówków i kodu odpowiedzi
+	 */
+	public interface TextStreamWriter {
+		/**
+		 * @param writer strumień odpowiedzi (nie trzeba zamykać)
+		 * @throws ClientAbortException klient przerwał połączenie
+		 */
+		void write(Writer writer) throws IOException, WebAppException;
+	}
+
 }
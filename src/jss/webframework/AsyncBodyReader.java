@@ -0,0 +1,175 @@
+package jss.webframework;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Reads request body without blocking container thread (Servlet 3.1
+ * {@link ReadListener}). Data is read, when it arrives - when whole body is
+ * read, it is stored in request attribute, and controller is called. Async
+ * processing is completed after controller.
+ *
+ * @author lukas
+ */
+final class AsyncBodyReader implements ReadListener, AsyncListener {
+	private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+	private final AsyncContext async;
+	private final ServletInputStream in;
+	private final WebAppConfig config;
+	private final long limit;
+	private final Job onComplete;
+	private final AtomicBoolean done = new AtomicBoolean();// body read, or failed
+	private byte[] buf;
+	private int length = 0;
+
+	private AsyncBodyReader(AsyncContext async, ServletInputStream in, WebAppConfig config, long contentLength,
+			long limit, Job onComplete) {
+		this.async = async;
+		this.in = in;
+		this.config = config;
+		this.limit = limit;
+		this.onComplete = onComplete;
+		this.buf = new byte[(int) (contentLength >= 0 ? contentLength : Math.min(INITIAL_BUFFER_SIZE, limit))];
+	}
+
+	/**
+	 * Starts async processing, and reads body. Controller is called by container
+	 * thread, which reads last part of data.
+	 *
+	 * @param request    request
+	 * @param response   response
+	 * @param config     application configuration (max size of body, timeout of
+	 *                   reading and processing, error page)
+	 * @param onComplete calls controller, when body is read
+	 */
+	static void start(HttpServletRequest request, HttpServletResponse response, WebAppConfig config,
+			Job onComplete) throws ServletException, IOException {
+
+		long maxSize = config.getMaxBodySize();
+		long limit = maxSize >= 0 ? Math.min(maxSize, MAX_ARRAY_SIZE) : MAX_ARRAY_SIZE;
+		long contentLength = request.getContentLengthLong();
+		if (contentLength > limit) {
+			DispatcherServlet.sendException(new WebAppException("Request body too large!",
+					HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE), request, response, config);
+			return;
+		}
+
+		AsyncContext async = request.startAsync(request, response);
+		async.setTimeout(config.getAsyncTimeout());
+
+		AsyncBodyReader reader = new AsyncBodyReader(async, request.getInputStream(), config, contentLength, limit,
+				onComplete);
+		async.addListener(reader);
+		reader.in.setReadListener(reader);
+	}
+
+	/**
+	 * Job called, when body is read
+	 */
+	interface Job {
+		void run() throws ServletException, IOException;
+	}
+
+	@Override
+	public void onDataAvailable() throws IOException {
+		while (!done.get() && in.isReady()) {
+			if (length == buf.length) {// full buffer - grown only when more data arrives
+				int b = in.read();
+				if (b < 0) {
+					break;
+				}
+				if (length >= limit) {
+					fail(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Request body too large!");
+					return;
+				}
+				byte[] larger = new byte[(int) Math.min(Math.max(2L * buf.length, INITIAL_BUFFER_SIZE), limit)];
+				System.arraycopy(buf, 0, larger, 0, length);
+				buf = larger;
+				buf[length++] = (byte) b;
+				continue;
+			}
+
+			int n = in.read(buf, length, buf.length - length);
+			if (n < 0) {
+				break;
+			}
+			length += n;
+		}
+	}
+
+	@Override
+	public void onAllDataRead() throws IOException {
+		if (!done.compareAndSet(false, true)) {
+			return;
+		}
+
+		try {
+			async.getRequest().setAttribute(AbstractServlet.ATTR_REQUEST_BODY, ByteBuffer.wrap(buf, 0, length));
+			onComplete.run();
+		} catch (ServletException e) {
+			throw new IOException(e);
+		} finally {
+			async.complete();
+		}
+	}
+
+	@Override
+	public void onError(Throwable t) {
+		// client aborted, or read error - response cannot be sent
+		if (done.compareAndSet(false, true)) {
+			async.complete();
+		}
+	}
+
+	@Override
+	public void onTimeout(AsyncEvent event) throws IOException {
+		fail(HttpServletResponse.SC_REQUEST_TIMEOUT, "Request timeout!");
+	}
+
+	@Override
+	public void onComplete(AsyncEvent event) {
+	}
+
+	@Override
+	public void onError(AsyncEvent event) {
+		onError(event.getThrowable());
+	}
+
+	@Override
+	public void onStartAsync(AsyncEvent event) {
+	}
+
+	/**
+	 * Sends error page and completes async processing
+	 */
+	private void fail(int code, String message) throws IOException {
+		if (!done.compareAndSet(false, true)) {
+			return;
+		}
+
+		try {
+			HttpServletResponse response = (HttpServletResponse) async.getResponse();
+			if (!response.isCommitted()) {
+				DispatcherServlet.sendException(new WebAppException(message, code),
+						(HttpServletRequest) async.getRequest(), response, config);
+			}
+		} catch (ServletException e) {
+			throw new IOException(e);
+		} finally {
+			async.complete();
+		}
+	}
+
+}
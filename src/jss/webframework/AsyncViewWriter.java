@@ -0,0 +1,154 @@
+package jss.webframework;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Waits for view of {@link AbstractAsyncController} without blocking
+ * container thread. When view is completed, it is written by container thread
+ * ({@link AsyncContext#start(Runnable)}), errors are sent as error page, and
+ * {@link AbstractController#endJob()} is called. Timeout sends 503.
+ *
+ * @author lukas
+ */
+final class AsyncViewWriter implements AsyncListener {
+	private final AsyncContext async;
+	private final AbstractController controller;
+	private final ControllerData data;
+	private final CompletionStage<AbstractView> stage;
+	private final AtomicBoolean done = new AtomicBoolean();// view written, or failed
+
+	private AsyncViewWriter(AsyncContext async, AbstractController controller, ControllerData data,
+			CompletionStage<AbstractView> stage) {
+		this.async = async;
+		this.controller = controller;
+		this.data = data;
+		this.stage = stage;
+	}
+
+	/**
+	 * Starts async processing - view is written, when stage is completed
+	 *
+	 * @param controller controller (its job is ended after view)
+	 * @param data       controller data
+	 * @param stage      future view
+	 * @param timeout    timeout in milliseconds (0 - no timeout)
+	 */
+	static void start(AbstractController controller, ControllerData data, CompletionStage<AbstractView> stage,
+			long timeout) {
+		HttpServletRequest request = data.getRequest();
+		AsyncContext async = request.startAsync(request, data.getResponse());
+		async.setTimeout(timeout);
+
+		AsyncViewWriter writer = new AsyncViewWriter(async, controller, data, stage);
+		async.addListener(writer);
+		stage.whenComplete((view, error) -> {
+			if (!writer.done.get()) {// not timed out
+				try {
+					async.start(() -> writer.finish(view, error));
+				} catch (IllegalStateException e) {
+					// timed out after check - async processing is already completed
+				}
+			}
+		});
+	}
+
+	/**
+	 * Writes view, or error (by container thread)
+	 */
+	private void finish(AbstractView view, Throwable error) {
+		if (!done.compareAndSet(false, true)) {
+			return;
+		}
+
+		try {
+			try {
+				if (error != null) {
+					throw error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+				}
+				FrameworkUtils.writeView(view, data);
+			} finally {
+				controller.endJob();
+			}
+		} catch (Throwable e) {
+			sendException(e);
+		} finally {
+			complete();
+		}
+	}
+
+	@Override
+	public void onTimeout(AsyncEvent event) {
+		if (!done.compareAndSet(false, true)) {
+			return;
+		}
+
+		try {
+			stage.toCompletableFuture().cancel(false);
+		} catch (UnsupportedOperationException e) {
+			// stage cannot be cancelled - result is ignored
+		}
+		try {
+			controller.endJob();
+			sendException(new WebAppException("Controller timeout!", HttpServletResponse.SC_SERVICE_UNAVAILABLE));
+		} catch (Throwable e) {
+			sendException(e);
+		} finally {
+			complete();
+		}
+	}
+
+	@Override
+	public void onError(AsyncEvent event) {
+		// client aborted - response cannot be sent
+		if (done.compareAndSet(false, true)) {
+			try {
+				controller.endJob();
+			} catch (WebAppException | RuntimeException e) {
+				// response cannot be sent
+			} finally {
+				async.complete();
+			}
+		}
+	}
+
+	@Override
+	public void onComplete(AsyncEvent event) {
+	}
+
+	@Override
+	public void onStartAsync(AsyncEvent event) {
+	}
+
+	/**
+	 * Flushes response (buffered writer of response wrapper), and completes async
+	 * processing
+	 */
+	private void complete() {
+		try {
+			data.getResponse().flushBuffer();
+		} catch (IOException | RuntimeException e) {
+			// client aborted - response cannot be sent
+		} finally {
+			async.complete();
+		}
+	}
+
+	private void sendException(Throwable e) {
+		try {
+			DispatcherServlet.sendException(e, data.getRequest(), data.getResponse(),
+					data.getDispatcher().getAppConfig());
+		} catch (Exception ex) {
+			// error page cannot be sent
+		}
+	}
+
+}
@@ -0,0 +1,36 @@
+package jss.webframework;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Odpowiedzi kontrolera na żądania GET są zapamiętywane i wysyłane bez
+ * wywołania kontrolera (do upływu czasu ważności). Kluczem jest ścieżka,
+ * wybrane parametry i język. Zapamiętywane są tylko odpowiedzi 200 bez
+ * ciasteczek.
+ *
+ * @author lukas
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface CachedResponse {
+
+	/**
+	 * Czas ważności odpowiedzi w sekundach
+	 */
+	long ttl();
+
+	/**
+	 * Parametry zapytania, od których zależy odpowiedź (pozostałe parametry są
+	 * pomijane)
+	 */
+	String[] params() default {};
+
+	/**
+	 * Czy odpowiedź zależy od języka?
+	 */
+	boolean locale() default true;
+
+}
@@ -0,0 +1,146 @@
+package jss.webframework;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Response wrapper, which sends response and keeps copy of body (for
+ * {@link ResponseCache}). Copying stops, when body exceeds maximum size.
+ *
+ * @author lukas
+ */
+final class CapturingResponse extends HttpServletResponseWrapper {
+	private final int maxSize;
+	private ByteArrayOutputStream copy = new ByteArrayOutputStream();// null - too large
+	private long contentLength = -1;// declared length
+	private ServletOutputStream stream;
+	private PrintWriter writer;
+
+	/**
+	 * @param response response
+	 * @param maxSize  maximum size of copied body
+	 */
+	CapturingResponse(HttpServletResponse response, int maxSize) {
+		super(response);
+		this.maxSize = maxSize;
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() throws IOException {
+		if (stream == null) {
+			ServletOutputStream out = getResponse().getOutputStream();
+			stream = new ServletOutputStream() {
+				@Override
+				public void write(int b) throws IOException {
+					out.write(b);
+					copied(new byte[] { (byte) b }, 0, 1);
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					out.write(b, off, len);
+					copied(b, off, len);
+				}
+
+				@Override
+				public void flush() throws IOException {
+					out.flush();
+				}
+
+				@Override
+				public boolean isReady() {
+					return out.isReady();
+				}
+
+				@Override
+				public void setWriteListener(WriteListener writeListener) {
+					throw new IllegalStateException("Non-blocking write is not supported!");
+				}
+			};
+		}
+		return stream;
+	}
+
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		if (writer == null) {
+			writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+		}
+		return writer;
+	}
+
+	@Override
+	public void setContentLength(int len) {
+		super.setContentLength(len);
+		contentLength = len;
+	}
+
+	@Override
+	public void setContentLengthLong(long len) {
+		super.setContentLengthLong(len);
+		contentLength = len;
+	}
+
+	@Override
+	public void flushBuffer() throws IOException {
+		if (writer != null) {
+			writer.flush();
+		}
+		super.flushBuffer();
+	}
+
+	@Override
+	public void resetBuffer() {
+		super.resetBuffer();
+		if (copy != null) {
+			copy.reset();
+		}
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		if (copy != null) {
+			copy.reset();
+		}
+	}
+
+	/**
+	 * Writes rest of text output
+	 */
+	void finish() {
+		if (writer != null) {
+			writer.flush();
+		}
+	}
+
+	/**
+	 * Copy of body, or null if body was too large, or was not written by this
+	 * wrapper (e.g. file sent by container)
+	 */
+	byte[] getBody() {
+		if (copy == null || (contentLength >= 0 && contentLength != copy.size())) {
+			return null;
+		}
+		return copy.toByteArray();
+	}
+
+	private void copied(byte[] b, int off, int len) {
+		if (copy == null) {
+			return;
+		}
+		if (copy.size() + len > maxSize) {
+			copy = null;// too large - not cached
+			return;
+		}
+		copy.write(b, off, len);
+	}
+
+}
@@ -0,0 +1,314 @@
+package jss.webframework;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Finds classes with annotations by reading class files (constant pool and
+ * class annotations only), without loading classes. Scans directories and jar
+ * files, class files are parsed in parallel.
+ *
+ * @author lukas
+ */
+final class ClassFileScanner {
+	private static final int PARALLEL_THRESHOLD = 64;// class files per task
+
+	private final byte[][] annotations;// annotation descriptors, e.g. Ljss/webframework/Path;
+
+	/**
+	 * @param annotations searched annotation classes
+	 */
+	ClassFileScanner(Class<?>... annotations) {
+		this.annotations = new byte[annotations.length][];
+		for (int i = 0; i < annotations.length; i++) {
+			String descriptor = "L" + annotations[i].getName().replace('.', '/') + ";";
+			this.annotations[i] = descriptor.getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Scans package and subpackages, in all directories and jars of class loader
+	 *
+	 * @param classLoader class loader
+	 * @param packageName the base package
+	 * @return names of classes with any of searched annotations
+	 * @throws IOException error while reading class files
+	 */
+	List<String> scan(ClassLoader classLoader, String packageName) throws IOException {
+		String path = packageName.replace('.', '/');
+
+		List<ClassFile> files = new ArrayList<>();
+		List<JarFile> jars = new ArrayList<>();
+		try {
+			Enumeration<URL> resources = classLoader.getResources(path);
+			while (resources.hasMoreElements()) {
+				URL resource = resources.nextElement();
+				if ("file".equals(resource.getProtocol())) {
+					addDirectory(files, resource);
+				} else if ("jar".equals(resource.getProtocol())) {
+					JarURLConnection connection = (JarURLConnection) resource.openConnection();
+					connection.setUseCaches(false);
+					JarFile jar = connection.getJarFile();
+					jars.add(jar);
+					addJar(files, jar, path + "/");
+				}
+			}
+
+			return ForkJoinPool.commonPool().invoke(new ScanTask(files, 0, files.size()));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			for (JarFile jar : jars) {
+				jar.close();
+			}
+		}
+	}
+
+	private static void addDirectory(List<ClassFile> files, URL directory) throws IOException {
+		java.nio.file.Path dir;
+		try {
+			dir = Paths.get(directory.toURI());
+		} catch (URISyntaxException e) {
+			dir = new File(directory.getFile()).toPath();
+		}
+
+		if (!Files.isDirectory(dir)) {
+			return;
+		}
+
+		try (Stream<java.nio.file.Path> walk = Files.walk(dir)) {
+			for (java.nio.file.Path p : walk.filter(p -> p.toString().endsWith(".class"))
+					.collect(Collectors.toList())) {
+				files.add(() -> Files.newInputStream(p));
+			}
+		}
+	}
+
+	private static void addJar(List<ClassFile> files, JarFile jar, String prefix) {
+		Enumeration<JarEntry> entries = jar.entries();
+		while (entries.hasMoreElements()) {
+			JarEntry entry = entries.nextElement();
+			String name = entry.getName();
+			if (name.startsWith(prefix) && name.endsWith(".class") && !entry.isDirectory()) {
+				files.add(() -> jar.getInputStream(entry));
+			}
+		}
+	}
+
+	/**
+	 * Reads class file, returns class name if class has any of searched
+	 * annotations
+	 *
+	 * @return class name, or null
+	 */
+	String read(InputStream input) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+		if (in.readInt() != 0xCAFEBABE) {
+			return null;
+		}
+		in.readUnsignedShort();// minor version
+		in.readUnsignedShort();// major version
+
+		// constant pool - keep only UTF-8 and class entries
+		int count = in.readUnsignedShort();
+		byte[][] utf8 = new byte[count][];
+		int[] classNames = new int[count];
+		boolean found = false;
+
+		for (int i = 1; i < count; i++) {
+			int tag = in.readUnsignedByte();
+			switch (tag) {
+			case 1:// Utf8
+				byte[] bytes = new byte[in.readUnsignedShort()];
+				in.readFully(bytes);
+				utf8[i] = bytes;
+				found |= isAnnotation(bytes);
+				break;
+			case 7:// Class
+				classNames[i] = in.readUnsignedShort();
+				break;
+			case 8:// String
+			case 16:// MethodType
+			case 19:// Module
+			case 20:// Package
+				in.skipBytes(2);
+				break;
+			case 15:// MethodHandle
+				in.skipBytes(3);
+				break;
+			case 3:// Integer
+			case 4:// Float
+			case 9:// Fieldref
+			case 10:// Methodref
+			case 11:// InterfaceMethodref
+			case 12:// NameAndType
+			case 17:// Dynamic
+			case 18:// InvokeDynamic
+				in.skipBytes(4);
+				break;
+			case 5:// Long
+			case 6:// Double
+				in.skipBytes(8);
+				i++;// takes two entries
+				break;
+			default:
+				throw new IOException("Invalid constant pool tag: " + tag);
+			}
+		}
+
+		if (!found) {// no searched annotation in constant pool
+			return null;
+		}
+
+		in.readUnsignedShort();// access flags
+		int thisClass = in.readUnsignedShort();
+		in.readUnsignedShort();// super class
+		in.skipBytes(2 * in.readUnsignedShort());// interfaces
+
+		skipMembers(in);// fields
+		skipMembers(in);// methods
+
+		// class attributes
+		int attributes = in.readUnsignedShort();
+		for (int a = 0; a < attributes; a++) {
+			String name = new String(utf8[in.readUnsignedShort()], StandardCharsets.UTF_8);
+			int length = in.readInt();
+
+			if (!"RuntimeVisibleAnnotations".equals(name)) {
+				in.skipBytes(length);
+				continue;
+			}
+
+			int num = in.readUnsignedShort();
+			for (int n = 0; n < num; n++) {
+				if (isAnnotation(utf8[in.readUnsignedShort()])) {
+					return new String(utf8[classNames[thisClass]], StandardCharsets.UTF_8).replace('/', '.');
+				}
+				skipElementValuePairs(in);
+			}
+		}
+
+		return null;
+	}
+
+	private boolean isAnnotation(byte[] descriptor) {
+		for (byte[] a : annotations) {
+			if (Arrays.equals(a, descriptor)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void skipMembers(DataInputStream in) throws IOException {
+		int count = in.readUnsignedShort();
+		for (int i = 0; i < count; i++) {
+			in.skipBytes(6);// access flags, name, descriptor
+			int attributes = in.readUnsignedShort();
+			for (int a = 0; a < attributes; a++) {
+				in.skipBytes(2);// name
+				in.skipBytes(in.readInt());
+			}
+		}
+	}
+
+	private static void skipElementValuePairs(DataInputStream in) throws IOException {
+		int pairs = in.readUnsignedShort();
+		for (int p = 0; p < pairs; p++) {
+			in.skipBytes(2);// name
+			skipElementValue(in);
+		}
+	}
+
+	private static void skipElementValue(DataInputStream in) throws IOException {
+		int tag = in.readUnsignedByte();
+		switch (tag) {
+		case 'e':// enum - type and name
+			in.skipBytes(4);
+			break;
+		case '@':// annotation
+			in.skipBytes(2);
+			skipElementValuePairs(in);
+			break;
+		case '[':// array
+			int num = in.readUnsignedShort();
+			for (int i = 0; i < num; i++) {
+				skipElementValue(in);
+			}
+			break;
+		default:// constant or class
+			in.skipBytes(2);
+			break;
+		}
+	}
+
+	/**
+	 * Class file to read
+	 */
+	private interface ClassFile {
+		InputStream open() throws IOException;
+	}
+
+	/**
+	 * Reads part of class files, splits work when there are many files
+	 */
+	private class ScanTask extends RecursiveTask<List<String>> {
+		private static final long serialVersionUID = 1L;
+
+		private final List<ClassFile> files;
+		private final int from;
+		private final int to;
+
+		private ScanTask(List<ClassFile> files, int from, int to) {
+			this.files = files;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<String> compute() {
+			if (to - from > PARALLEL_THRESHOLD) {
+				int mid = (from + to) >>> 1;
+				ScanTask left = new ScanTask(files, from, mid);
+				left.fork();
+				List<String> result = new ScanTask(files, mid, to).compute();
+				result.addAll(left.join());
+				return result;
+			}
+
+			List<String> result = new ArrayList<>();
+			for (int i = from; i < to; i++) {
+				try (InputStream input = files.get(i).open()) {
+					String name = read(input);
+					if (name != null) {
+						result.add(name);
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			return result;
+		}
+	}
+
+}
@@ -0,0 +1,18 @@
+package jss.webframework;
+
+import java.io.IOException;
+
+/**
+ * Klient przerwał połączenie podczas wysyłania odpowiedzi - odpowiedź nie
+ * może zostać dokończona, ani zastąpiona stroną błędu
+ *
+ * @author lukas
+ */
+public class ClientAbortException extends IOException {
+	private static final long serialVersionUID = 6220386472818373509L;
+
+	public ClientAbortException(Throwable cause) {
+		super("Client aborted connection!", cause);
+	}
+
+}
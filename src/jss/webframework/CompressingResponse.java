@@ -0,0 +1,195 @@
+package jss.webframework;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Set;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Response wrapper, which compresses output of unknown length (JSP). Output is
+ * buffered until minimum size is reached - then compression is started (if
+ * content type is allowed), otherwise data is sent without compression.
+ * {@link #finish()} must be called after output is written, or
+ * {@link #abort()} after error.
+ *
+ * @author lukas
+ */
+final class CompressingResponse extends HttpServletResponseWrapper {
+	private final String encoding;
+	private final int minSize;
+	private final Set<String> mimeTypes;
+
+	private byte[] buffer;
+	private int length = 0;
+	private OutputStream target;// after decision: compressing or response stream
+	private boolean compressing = false;
+	private ServletOutputStream stream;
+	private PrintWriter writer;
+
+	/**
+	 * @param response  response
+	 * @param encoding  negotiated encoding
+	 * @param minSize   minimum size to compress
+	 * @param mimeTypes compressed MIME types
+	 */
+	CompressingResponse(HttpServletResponse response, String encoding, int minSize, Set<String> mimeTypes) {
+		super(response);
+		this.encoding = encoding;
+		this.minSize = minSize;
+		this.mimeTypes = mimeTypes;
+		this.buffer = new byte[Math.max(minSize, 256)];
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() {
+		if (stream == null) {
+			stream = new ServletOutputStream() {
+				@Override
+				public void write(int b) throws IOException {
+					CompressingResponse.this.write(new byte[] { (byte) b }, 0, 1);
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					CompressingResponse.this.write(b, off, len);
+				}
+
+				@Override
+				public void flush() throws IOException {
+					if (target != null) {
+						target.flush();
+					}
+				}
+
+				@Override
+				public boolean isReady() {
+					return true;
+				}
+
+				@Override
+				public void setWriteListener(WriteListener writeListener) {
+					throw new IllegalStateException("Non-blocking write is not supported!");
+				}
+			};
+		}
+		return stream;
+	}
+
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		if (writer == null) {
+			writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+		}
+		return writer;
+	}
+
+	@Override
+	public void setContentLength(int len) {
+		// length of compressed data is not known
+	}
+
+	@Override
+	public void setContentLengthLong(long len) {
+		// length of compressed data is not known
+	}
+
+	@Override
+	public void flushBuffer() throws IOException {
+		if (writer != null) {
+			writer.flush();
+		}
+		if (target != null) {// compressed data - with sync flush
+			target.flush();
+		}
+		super.flushBuffer();
+	}
+
+	@Override
+	public void resetBuffer() {
+		super.resetBuffer();
+		if (target == null) {
+			length = 0;
+		}
+	}
+
+	@Override
+	public void reset() {
+		super.reset();
+		if (target == null) {
+			length = 0;
+		}
+	}
+
+	private void write(byte[] b, int off, int len) throws IOException {
+		if (target != null) {
+			target.write(b, off, len);
+			return;
+		}
+
+		if (length + len <= buffer.length) {
+			System.arraycopy(b, off, buffer, length, len);
+			length += len;
+			if (length < minSize) {
+				return;
+			}
+		} else {
+			buffer = Arrays.copyOf(buffer, length + len);
+			System.arraycopy(b, off, buffer, length, len);
+			length += len;
+		}
+		start(true);
+	}
+
+	/**
+	 * Chooses target - compressed, when content is large enough and has allowed
+	 * type
+	 */
+	private void start(boolean large) throws IOException {
+		HttpServletResponse response = (HttpServletResponse) getResponse();
+		if (large && !response.isCommitted() && !response.containsHeader("Content-Encoding")
+				&& Compression.isCompressible(response.getContentType(), mimeTypes)) {
+			response.setHeader("Content-Encoding", encoding);
+			target = Compression.stream(response.getOutputStream(), encoding);
+			compressing = true;
+		} else {
+			target = response.getOutputStream();
+		}
+		target.write(buffer, 0, length);
+		buffer = null;
+	}
+
+	/**
+	 * Writes rest of data (and end of compressed data)
+	 */
+	void finish() throws IOException {
+		if (writer != null) {
+			writer.flush();
+		}
+		if (target == null) {// small - without compression
+			if (length == 0) {
+				return;
+			}
+			start(false);
+		}
+		if (compressing) {
+			target.close();
+		}
+	}
+
+	/**
+	 * Releases compression after error (end of compressed data is not written)
+	 */
+	void abort() {
+		if (compressing) {
+			Compression.abort(target);
+		}
+	}
+
+}
@@ -0,0 +1,327 @@
+package jss.webframework;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Response compression - negotiation of encoding (gzip, deflate), and
+ * compression with pooled {@link Deflater} instances.
+ *
+ * @author lukas
+ */
+final class Compression {
+	static final String GZIP = "gzip";
+	static final String DEFLATE = "deflate";
+
+	private static final int POOL_SIZE = 32;
+	private static final int BUFFER_SIZE = 8 * 1024;
+	private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+	// raw deflate (gzip - own header and trailer), and zlib format (deflate)
+	private static final ArrayBlockingQueue<Deflater> RAW_POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+	private static final ArrayBlockingQueue<Deflater> ZLIB_POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+
+	private Compression() {
+	}
+
+	/**
+	 * Chooses encoding from Accept-Encoding header (gzip preferred)
+	 *
+	 * @param acceptEncoding header value, may be null
+	 * @return {@link #GZIP}, {@link #DEFLATE}, or null when compression is not
+	 *         accepted
+	 */
+	static String negotiate(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return null;
+		}
+
+		float gzip = -1;
+		float deflate = -1;
+		float any = -1;
+		for (String item : acceptEncoding.split(",")) {
+			String coding = item;
+			float q = 1;
+			int semicolon = item.indexOf(';');
+			if (semicolon >= 0) {
+				coding = item.substring(0, semicolon);
+				String param = item.substring(semicolon + 1).trim();
+				if (param.startsWith("q=")) {
+					try {
+						q = Float.parseFloat(param.substring(2));
+					} catch (NumberFormatException e) {
+						q = 0;
+					}
+				}
+			}
+
+			coding = coding.trim().toLowerCase();
+			if (coding.equals(GZIP) || coding.equals("x-gzip")) {
+				gzip = q;
+			} else if (coding.equals(DEFLATE)) {
+				deflate = q;
+			} else if (coding.equals("*")) {
+				any = q;
+			}
+		}
+
+		if (gzip < 0) {
+			gzip = any;
+		}
+		if (deflate < 0) {
+			deflate = any;
+		}
+		if (gzip > 0 && gzip >= deflate) {
+			return GZIP;
+		}
+		if (deflate > 0) {
+			return DEFLATE;
+		}
+		return null;
+	}
+
+	/**
+	 * Is content type in allowlist? Entries may be full types, or e.g.
+	 * {@code text/*}
+	 *
+	 * @param contentType content type (may have parameters), or null
+	 * @param allowed     allowed MIME types (lower case)
+	 */
+	static boolean isCompressible(String contentType, Set<String> allowed) {
+		if (contentType == null) {
+			return false;
+		}
+		int semicolon = contentType.indexOf(';');
+		String mime = (semicolon >= 0 ? contentType.substring(0, semicolon) : contentType).trim().toLowerCase();
+		if (allowed.contains(mime)) {
+			return true;
+		}
+		int slash = mime.indexOf('/');
+		return slash > 0 && allowed.contains(mime.substring(0, slash) + "/*");
+	}
+
+	/**
+	 * Compresses data
+	 *
+	 * @param data     data
+	 * @param off      offset
+	 * @param len      length
+	 * @param encoding {@link #GZIP} or {@link #DEFLATE}
+	 * @return compressed data
+	 */
+	static byte[] compress(byte[] data, int off, int len, String encoding) {
+		boolean gzip = GZIP.equals(encoding);
+		Deflater deflater = acquire(gzip);
+		try {
+			byte[] out = new byte[Math.max(64, len / 2 + (gzip ? 18 : 0))];
+			int pos = 0;
+			if (gzip) {
+				System.arraycopy(GZIP_HEADER, 0, out, 0, GZIP_HEADER.length);
+				pos = GZIP_HEADER.length;
+			}
+
+			deflater.setInput(data, off, len);
+			deflater.finish();
+			while (!deflater.finished()) {
+				if (pos == out.length) {
+					out = Arrays.copyOf(out, out.length * 2);
+				}
+				pos += deflater.deflate(out, pos, out.length - pos);
+			}
+
+			if (gzip) {// trailer - CRC32 and size
+				CRC32 crc = new CRC32();
+				crc.update(data, off, len);
+				if (out.length - pos < 8) {
+					out = Arrays.copyOf(out, pos + 8);
+				}
+				writeIntLE(out, pos, (int) crc.getValue());
+				writeIntLE(out, pos + 4, len);
+				pos += 8;
+			}
+			return pos == out.length ? out : Arrays.copyOf(out, pos);
+		} finally {
+			release(deflater, gzip);
+		}
+	}
+
+	/**
+	 * Compressing stream. Closing stream writes end of compressed data, but does
+	 * not close target stream.
+	 *
+	 * @param out      target stream
+	 * @param encoding {@link #GZIP} or {@link #DEFLATE}
+	 */
+	static OutputStream stream(OutputStream out, String encoding) throws IOException {
+		return new CompressingOutputStream(out, GZIP.equals(encoding));
+	}
+
+	/**
+	 * Releases deflater of compressing stream after error, without writing end of
+	 * compressed data (other streams are ignored)
+	 *
+	 * @param out stream from {@link #stream(OutputStream, String)}, or other
+	 *            stream
+	 */
+	static void abort(OutputStream out) {
+		if (out instanceof CompressingOutputStream) {
+			((CompressingOutputStream) out).abort();
+		}
+	}
+
+	/**
+	 * Compressed variants of immutable content - content is compressed once for
+	 * each encoding
+	 */
+	static final class Cache {
+		private final Object source;// content, which was compressed (by identity)
+		private volatile byte[] gzip;
+		private volatile byte[] deflate;
+
+		Cache(Object source) {
+			this.source = source;
+		}
+
+		/**
+		 * Is cache for this content?
+		 */
+		boolean isFor(Object content) {
+			return source == content;
+		}
+
+		/**
+		 * @param encoding encoding
+		 * @param data     content data (compressed, when not cached)
+		 * @return compressed data
+		 */
+		byte[] get(String encoding, byte[] data) {
+			boolean isGzip = GZIP.equals(encoding);
+			byte[] result = isGzip ? gzip : deflate;
+			if (result == null) {// compressed at most few times, by concurrent requests
+				result = compress(data, 0, data.length, encoding);
+				if (isGzip) {
+					gzip = result;
+				} else {
+					deflate = result;
+				}
+			}
+			return result;
+		}
+	}
+
+	private static Deflater acquire(boolean raw) {
+		Deflater deflater = (raw ? RAW_POOL : ZLIB_POOL).poll();
+		return deflater != null ? deflater : new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+	}
+
+	private static void release(Deflater deflater, boolean raw) {
+		deflater.reset();
+		if (!(raw ? RAW_POOL : ZLIB_POOL).offer(deflater)) {
+			deflater.end();// pool is full
+		}
+	}
+
+	private static void writeIntLE(byte[] b, int pos, int v) {
+		b[pos] = (byte) v;
+		b[pos + 1] = (byte) (v >> 8);
+		b[pos + 2] = (byte) (v >> 16);
+		b[pos + 3] = (byte) (v >> 24);
+	}
+
+	/**
+	 * Stream compressing with pooled deflater
+	 */
+	private static final class CompressingOutputStream extends OutputStream {
+		private final OutputStream out;
+		private final boolean gzip;
+		private final CRC32 crc;
+		private final byte[] buf = new byte[BUFFER_SIZE];
+		private Deflater deflater;
+		private long size = 0;
+
+		CompressingOutputStream(OutputStream out, boolean gzip) throws IOException {
+			this.out = out;
+			this.gzip = gzip;
+			this.crc = gzip ? new CRC32() : null;
+			this.deflater = acquire(gzip);
+			if (gzip) {
+				out.write(GZIP_HEADER);
+			}
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (deflater == null) {
+				throw new IOException("Stream closed!");
+			}
+			if (len == 0) {
+				return;
+			}
+			if (gzip) {
+				crc.update(b, off, len);
+			}
+			size += len;
+
+			deflater.setInput(b, off, len);
+			while (!deflater.needsInput()) {
+				int n = deflater.deflate(buf, 0, buf.length);
+				out.write(buf, 0, n);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (deflater != null) {
+				int n;
+				while ((n = deflater.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH)) > 0) {
+					out.write(buf, 0, n);
+				}
+			}
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (deflater == null) {
+				return;
+			}
+			try {
+				deflater.finish();
+				while (!deflater.finished()) {
+					int n = deflater.deflate(buf, 0, buf.length);
+					out.write(buf, 0, n);
+				}
+				if (gzip) {
+					byte[] trailer = new byte[8];
+					writeIntLE(trailer, 0, (int) crc.getValue());
+					writeIntLE(trailer, 4, (int) size);
+					out.write(trailer);
+				}
+			} finally {
+				release(deflater, gzip);
+				deflater = null;
+			}
+		}
+
+		/**
+		 * Releases deflater, without writing end of compressed data
+		 */
+		void abort() {
+			if (deflater != null) {
+				release(deflater, gzip);
+				deflater = null;
+			}
+		}
+	}
+
+}
@@ -2,6 +2,7 @@ package jss.webframework;
 
 import java.util.Locale;
 import java.util.Map;
+import java.util.ResourceBundle;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -11,23 +12,31 @@ import javax.servlet.http.HttpServletResponse;
  * 
  * @author lukas
  */
-public class ControllerData {
+public class ControllerData implements ParameterLoader, TranslationLoader {
 	protected final HttpServletRequest request;
 	protected final HttpServletResponse response;
 	protected final HttpMethodType method;
 	protected final Map<String, RequestParam> params;
 	protected final Dispatcher dispatcher;
 	protected final Locale locale;
+	protected final PathVariables pathVariables;
 
 	public ControllerData(HttpServletRequest request, HttpServletResponse response, HttpMethodType method,
 			Map<String, RequestParam> params, Dispatcher dispatcher, Locale locale) {
 
+		this(request, response, method, params, dispatcher, locale, PathVariables.EMPTY);
+	}
+
+	public ControllerData(HttpServletRequest request, HttpServletResponse response, HttpMethodType method,
+			Map<String, RequestParam> params, Dispatcher dispatcher, Locale locale, PathVariables pathVariables) {
+
 		this.request = request;
 		this.response = response;
 		this.method = method;
 		this.params = params;
 		this.dispatcher = dispatcher;
 		this.locale = locale;
+		this.pathVariables = pathVariables;
 	}
 
 	/**
@@ -52,8 +61,9 @@ public class ControllerData {
 	}
 
 	/**
-	 * @return Parametry zapytania
+	 * @return Parametry zapytania (przetwarzane przy pierwszym użyciu)
 	 */
+	@Override
 	public Map<String, RequestParam> getParams() {
 		return params;
 	}
@@ -72,4 +82,54 @@ public class ControllerData {
 		return locale;
 	}
 
+	/**
+	 * @return Path variables, matched with controller path
+	 */
+	@Override
+	public PathVariables getPathVariables() {
+		return pathVariables;
+	}
+
+	@Override
+	public RequestParam getParam(String name) {
+		return params.get(name);
+	}
+
+	@Override
+	public String getSingleParam(String name) {
+		RequestParam param = params.get(name);
+		return param != null ? param.getSingleValue() : null;
+	}
+
+	@Override
+	public String getPathVariable(int index) {
+		return pathVariables.get(index);
+	}
+
+	@Override
+	public String getPathVariable(String name) {
+		return pathVariables.get(name);
+	}
+
+	/**
+	 * Get translations from file with resolved locale
+	 */
+	@Override
+	public ResourceBundle getTranslations(String file) {
+		return getTranslations(file, locale);
+	}
+
+	/**
+	 * Get translations from file with specified locale
+	 */
+	@Override
+	public ResourceBundle getTranslations(String file, Locale locale) {
+		LocaleBundle bundle = dispatcher.getLocaleBundle();
+		if (bundle == null) {
+			throw new IllegalStateException("Translations not initialized!");
+		}
+
+		return bundle.getTranslations(file, locale);
+	}
+
 }
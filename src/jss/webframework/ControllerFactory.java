@@ -0,0 +1,94 @@
+package jss.webframework;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Creates controller instances. Constructor is resolved once (at servlet init)
+ * and called directly, without reflection on every request. Stateless
+ * controllers are created once, at servlet init.
+ * 
+ * @author lukas
+ */
+final class ControllerFactory {
+	private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(void.class, ControllerData.class);
+	private static final MethodType FACTORY_TYPE = MethodType.methodType(AbstractController.class,
+			ControllerData.class);
+
+	private final Class<?> controller;
+	private final MethodHandle constructor;// for AbstractController (one factory for many classes - not constant)
+	private final StatelessController instance;// for StatelessController
+
+	private ControllerFactory(Class<?> controller, MethodHandle constructor, StatelessController instance) {
+		this.controller = controller;
+		this.constructor = constructor;
+		this.instance = instance;
+	}
+
+	/**
+	 * Resolves constructor of controller, or creates stateless controller
+	 * 
+	 * @param controller controller class ({@link AbstractController} or
+	 *                   {@link StatelessController})
+	 * @return factory
+	 * @throws ReflectiveOperationException no public constructor with
+	 *                                      {@link ControllerData} parameter (or
+	 *                                      without parameters for stateless
+	 *                                      controller), or error in constructor
+	 */
+	static ControllerFactory of(Class<?> controller) throws ReflectiveOperationException {
+		if (StatelessController.class.isAssignableFrom(controller)) {
+			StatelessController instance = (StatelessController) controller.getConstructor().newInstance();
+			return new ControllerFactory(controller, null, instance);
+		}
+
+		MethodHandle constructor = MethodHandles.publicLookup().findConstructor(controller, CONSTRUCTOR_TYPE)
+				.asType(FACTORY_TYPE);
+		return new ControllerFactory(controller, constructor, null);
+	}
+
+	/**
+	 * Controller class
+	 */
+	Class<?> getController() {
+		return controller;
+	}
+
+	/**
+	 * Is controller stateless (single instance)?
+	 */
+	boolean isStateless() {
+		return instance != null;
+	}
+
+	/**
+	 * Instance of stateless controller, or null
+	 */
+	StatelessController getStatelessInstance() {
+		return instance;
+	}
+
+	/**
+	 * Creates new controller. Exceptions thrown by constructor are not wrapped.
+	 * 
+	 * @param data data for controller
+	 * @return controller
+	 * @throws WebAppException error thrown by constructor
+	 */
+	AbstractController newInstance(ControllerData data) throws WebAppException {
+		try {
+			return (AbstractController) constructor.invokeExact(data);
+		} catch (WebAppException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {// not declared by constructor
+			throw new WebAppException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ControllerFactory [controller=" + controller.getName() + "]";
+	}
+
+}
@@ -0,0 +1,18 @@
+package jss.webframework;
+
+/**
+ * Registry of controllers, generated at compile time by annotation processor
+ * ({@code jss.webframework.processor.ControllerRegistryProcessor}). Registries
+ * are loaded by {@link java.util.ServiceLoader} - when there is no registry,
+ * controllers are found by scanning classpath.
+ * 
+ * @author lukas
+ */
+public interface ControllerRegistry {
+
+	/**
+	 * @return classes annotated with {@link Path} or {@link PathError}
+	 */
+	public Class<?>[] getControllers();
+
+}
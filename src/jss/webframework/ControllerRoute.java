@@ -0,0 +1,83 @@
+package jss.webframework;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Controller registered in route table
+ * 
+ * @author lukas
+ */
+final class ControllerRoute {
+	private final ControllerFactory factory;
+	private final Path path;
+	private final Set<HttpMethodType> methods;// declared methods - empty means all
+	private final CachedResponse cache;// response cache declaration, or null
+
+	ControllerRoute(ControllerFactory factory, Path path) {
+		this.factory = factory;
+		this.path = path;
+
+		Set<HttpMethodType> declared = EnumSet.noneOf(HttpMethodType.class);
+		for (HttpMethodType m : path.methods()) {
+			declared.add(m);
+		}
+		this.methods = declared;
+		this.cache = factory.getController().getAnnotation(CachedResponse.class);
+	}
+
+	/**
+	 * Controller class
+	 */
+	Class<?> getController() {
+		return factory.getController();
+	}
+
+	/**
+	 * Factory of controller instances
+	 */
+	ControllerFactory getFactory() {
+		return factory;
+	}
+
+	/**
+	 * Path annotation of controller
+	 */
+	Path getPath() {
+		return path;
+	}
+
+	/**
+	 * Response cache declaration of controller, or null
+	 */
+	CachedResponse getCache() {
+		return cache;
+	}
+
+	/**
+	 * Is method declared explicitly by controller?
+	 */
+	boolean isDeclared(HttpMethodType method) {
+		return methods.contains(method);
+	}
+
+	/**
+	 * Methods accepted by controller. HEAD is accepted with GET, OPTIONS only when
+	 * declared.
+	 */
+	Set<HttpMethodType> getAcceptedMethods() {
+		Set<HttpMethodType> accepted;
+		if (methods.isEmpty()) {
+			accepted = EnumSet.complementOf(EnumSet.of(HttpMethodType.OPTIONS));
+		} else {
+			accepted = EnumSet.copyOf(methods);
+		}
+
+		if (accepted.contains(HttpMethodType.GET)) {
+			accepted.add(HttpMethodType.HEAD);
+		}
+
+		return accepted;
+	}
+
+}
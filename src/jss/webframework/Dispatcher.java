@@ -1,6 +1,9 @@
 package jss.webframework;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
@@ -14,7 +17,9 @@ import javax.servlet.http.HttpServletResponse;
 public interface Dispatcher {
 
 	/**
-	 * Redirect to controller
+	 * Redirect to controller - to its first path without path variables. When
+	 * all paths of controller have variables (or controller is unknown), redirect
+	 * is not sent.
 	 * 
 	 * @param controller controller
 	 * @param request    request object
@@ -44,6 +49,30 @@ public interface Dispatcher {
 	 */
 	public byte[] getRequestBinaryData(HttpServletRequest request) throws IOException;
 
+	/**
+	 * Gets request data as buffer (data from position 0 to limit). Default - wraps
+	 * {@link #getRequestBinaryData(HttpServletRequest)}.
+	 */
+	public default ByteBuffer getRequestByteBuffer(HttpServletRequest request) throws IOException {
+		return ByteBuffer.wrap(getRequestBinaryData(request));
+	}
+
+	/**
+	 * Gets request data as stream, limited to max body size. Default - reads
+	 * {@link #getRequestBinaryData(HttpServletRequest)}.
+	 */
+	public default InputStream getRequestStream(HttpServletRequest request) throws IOException {
+		return new ByteArrayInputStream(getRequestBinaryData(request));
+	}
+
+	/**
+	 * Gets parts of multipart/form-data request, read as stream. Default - parts
+	 * of {@link #getRequestStream(HttpServletRequest)}.
+	 */
+	public default MultipartIterator getMultipartParts(HttpServletRequest request) throws IOException {
+		return MultipartIterator.of(getRequestStream(request), request.getContentType());
+	}
+
 	/**
 	 * Servlet context
 	 */
@@ -59,4 +88,14 @@ public interface Dispatcher {
 	 */
 	public WebAppConfig getAppConfig();
 
+	/**
+	 * Cache of controller responses (hit, miss and eviction counters)
+	 * 
+	 * @throws UnsupportedOperationException dispatcher has no response cache
+	 *                                       (default)
+	 */
+	public default ResponseCache getResponseCache() {
+		throw new UnsupportedOperationException("Response cache is not supported by " + getClass().getName());
+	}
+
 }
@@ -2,12 +2,15 @@ package jss.webframework;
 
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.lang.reflect.InvocationTargetException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -26,10 +29,16 @@ public class DispatcherServlet extends AbstractServlet implements Dispatcher {
 
 	public static final String ATTR_EXCEPTION_CODE = "jss.webframework.exc_code";
 
-	private final Map<Path, Class<? extends AbstractController>> classes = new HashMap<>();
-	private final Map<PathError, Class<? extends AbstractController>> classesErr = new HashMap<>();
+	private final Map<Path, Class<?>> classes = new HashMap<>();
+	private final Map<PathError, Class<?>> classesErr = new HashMap<>();
+	private final Map<HttpMethodType, RouteTrie<ControllerRoute>> routes = new EnumMap<>(HttpMethodType.class);
+	private RouteTrie<ControllerFactory> errorRoutes;
+	private ControllerFactory defaultErrorController;
+	private Map<Class<?>, String> controllerPaths;// controller -> first path without variables
+	private volatile RedirectUrls redirectUrls;// cached redirect URLs of controllers
 	private WebAppConfig appConfig;
 	private LocaleBundle localeBundle;
+	private ResponseCache responseCache;
 
 	@Override
 	public synchronized void init(ServletConfig config) throws ServletException {
@@ -41,21 +50,20 @@ public class DispatcherServlet extends AbstractServlet implements Dispatcher {
 		// read controller classes
 		List<Class<?>> classlist = null;
 		try {
-			classlist = FrameworkUtils.getClasses(appConfig.getScanPackage());
+			// classes from generated registry, or scan if there is no registry
+			classlist = FrameworkUtils.getRegisteredClasses(appConfig.getScanPackage());
+			if (classlist == null) {
+				classlist = FrameworkUtils.getClasses(appConfig.getScanPackage());
+			}
+
 			for (Class<?> c : classlist) {
-				if (AbstractController.class.isAssignableFrom(c)) {
+				if (AbstractController.class.isAssignableFrom(c) || StatelessController.class.isAssignableFrom(c)) {
 					if (c.isAnnotationPresent(Path.class)) {
-						@SuppressWarnings("unchecked") // always good - checked before
-						Class<? extends AbstractController> controller = (Class<? extends AbstractController>) c;
-						Path path = c.getAnnotation(Path.class);
-						classes.put(path, controller);
+						classes.put(c.getAnnotation(Path.class), c);
 					}
 
 					if (c.isAnnotationPresent(PathError.class)) {
-						@SuppressWarnings("unchecked") // always good - checked before
-						Class<? extends AbstractController> controller = (Class<? extends AbstractController>) c;
-						PathError path = c.getAnnotation(PathError.class);
-						classesErr.put(path, controller);
+						classesErr.put(c.getAnnotation(PathError.class), c);
 					}
 				}
 			}
@@ -63,6 +71,84 @@ public class DispatcherServlet extends AbstractServlet implements Dispatcher {
 			e.printStackTrace();
 			throw new ServletException("Error while getting controller classes!", e);
 		}
+
+		// compile paths of controllers
+		try {
+			Map<HttpMethodType, RouteTrie.Builder<ControllerRoute>> builders = new EnumMap<>(HttpMethodType.class);
+			for (HttpMethodType m : HttpMethodType.values()) {
+				builders.put(m, new RouteTrie.Builder<>());
+			}
+
+			// one factory for each class - controller with @Path and @PathError is created once
+			Map<Class<?>, ControllerFactory> factories = new HashMap<>();
+
+			// HEAD by GET controllers first - controllers declaring HEAD replace them
+			List<ControllerRoute> controllerRoutes = new ArrayList<>(classes.size());
+			for (Entry<Path, Class<?>> c : classes.entrySet()) {
+				ControllerRoute route = new ControllerRoute(controllerFactory(factories, c.getValue()), c.getKey());
+				controllerRoutes.add(route);
+
+				Set<HttpMethodType> accepted = route.getAcceptedMethods();
+				if (accepted.contains(HttpMethodType.HEAD) && !route.isDeclared(HttpMethodType.HEAD)) {
+					addRoute(builders.get(HttpMethodType.HEAD), route);
+				}
+			}
+			for (ControllerRoute route : controllerRoutes) {
+				for (HttpMethodType m : route.getAcceptedMethods()) {
+					if (m != HttpMethodType.HEAD || route.isDeclared(m)) {
+						addRoute(builders.get(m), route);
+					}
+				}
+			}
+
+			for (HttpMethodType m : HttpMethodType.values()) {
+				routes.put(m, builders.get(m).build());
+			}
+
+			// error controllers - always match sub paths
+			RouteTrie.Builder<ControllerFactory> errBuilder = new RouteTrie.Builder<>();
+			defaultErrorController = null;
+			for (Entry<PathError, Class<?>> c : classesErr.entrySet()) {
+				ControllerFactory factory = controllerFactory(factories, c.getValue());
+				if (c.getKey().isDefault()) {
+					defaultErrorController = factory;
+				} else {
+					for (String s : c.getKey().value()) {
+						errBuilder.add(s, factory, true);
+					}
+				}
+			}
+			errorRoutes = errBuilder.build();
+		} catch (IllegalArgumentException e) {
+			throw new ServletException("Invalid controller path!", e);
+		}
+
+		// reverse index - controller to first path without variables (paths with
+		// variables cannot be redirect URLs)
+		Map<Class<?>, String> paths = new HashMap<>();
+		for (Entry<Path, Class<?>> c : classes.entrySet()) {
+			for (String path : c.getKey().value()) {
+				if (path.indexOf('{') < 0) {
+					paths.put(c.getValue(), path.startsWith("/") ? path : "/" + path);
+					break;
+				}
+			}
+		}
+		controllerPaths = paths;
+		redirectUrls = null;
+		responseCache = new ResponseCache(appConfig.getResponseCacheSize());
+
+		// JSP files of controllers - missing file fails at startup
+		if (appConfig.isValidateJsp()) {
+			JspResolver jsps = JspResolver.of(getServletContext());
+			try {
+				for (Class<?> c : classlist) {
+					jsps.validate(c);
+				}
+			} catch (WebAppException e) {
+				throw new ServletException(e.getMessage(), e);
+			}
+		}
 	}
 
 	@Override
@@ -106,48 +192,161 @@ public class DispatcherServlet extends AbstractServlet implements Dispatcher {
 			path = path.substring(0, path.length() - 1);
 		}
 
-		Class<? extends AbstractController> clazz = findController(path);
+		RouteTrie<ControllerRoute> table = routes.get(method);
+		int[] captures = table.newCaptures();
+		RouteTrie.Entry<ControllerRoute> route = table.find(path, captures);
 
-		if (clazz != null) {// controller found
-			try {
-				Map<String, RequestParam> params = processParameters(request);// get request params
-				ControllerData data = new ControllerData(request, response, method, params, this, locale);
+		if (route != null) {// controller found
+			PathVariables pathVariables = PathVariables.EMPTY;
+			if (route.getVariables().length > 0) {
+				pathVariables = new PathVariables(path, route.getVariables(), captures);
+			}
 
-				FrameworkUtils.dispatchToController(clazz, data);
+			// HEAD by GET controller - controller sees GET, view body is not sent
+			HttpMethodType controllerMethod = method;
+			if (method == HttpMethodType.HEAD && !route.getValue().isDeclared(HttpMethodType.HEAD)) {
+				controllerMethod = HttpMethodType.GET;
+			}
 
-			} catch (Throwable e) {
-				// if error occured when constructor call - get this exception
-				if (e instanceof InvocationTargetException) {
-					e = ((InvocationTargetException) e).getTargetException();
-				}
+			CachedResponse cached = route.getValue().getCache();
+			if (cached != null && controllerMethod == HttpMethodType.GET) {// response from cache, or cached
+				dispatchCached(request, response, route.getValue(), cached, method == HttpMethodType.HEAD, path,
+						pathVariables, locale);
+			} else if (route.getValue().getPath().asyncBody() && request.isAsyncSupported() && hasBody(request)) {
+				// read body without blocking thread, then call controller
+				final HttpMethodType m = controllerMethod;
+				final PathVariables variables = pathVariables;
+				final Locale l = locale;
+				AsyncBodyReader.start(request, response, appConfig,
+						() -> dispatch(request, response, route.getValue(), m, variables, l));
+			} else {
+				dispatch(request, response, route.getValue(), controllerMethod, pathVariables, locale);
+			}
+		} else {// controller not found for method
+			String allow = findAllowedMethods(path);
+
+			if (allow == null) {// no controller for path - show error
+				response.sendError(HttpServletResponse.SC_NOT_FOUND, "Not found!");
+				request.getRequestDispatcher(appConfig.getErrorPath()).include(request, response);
+			} else if (method == HttpMethodType.OPTIONS) {// OPTIONS without controller - answer from table
+				response.setHeader("Allow", allow);
+			} else {// method not allowed
+				response.setHeader("Allow", allow);
+				response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED, "Method not allowed!");
+				request.getRequestDispatcher(appConfig.getErrorPath()).include(request, response);
+			}
+		}
+	}
 
-				if (e instanceof WebAppException) {// web application exception
-					WebAppException webExc = (WebAppException) e;
-					response.sendError(webExc.getCode(), webExc.getMessage());
+	/**
+	 * Calls controller, and sends error page on exception
+	 * 
+	 * @param route            controller route
+	 * @param controllerMethod HTTP method seen by controller
+	 * @param pathVariables    path variables
+	 * @param locale           current locale
+	 */
+	private void dispatch(HttpServletRequest request, HttpServletResponse response, ControllerRoute route,
+			HttpMethodType controllerMethod, PathVariables pathVariables, Locale locale)
+			throws ServletException, IOException {
 
-					if (appConfig.isAddErrorCause()) {
-						request.setAttribute("javax.servlet.error.exception", webExc);
-						request.setAttribute(ATTR_EXCEPTION_CODE, webExc.getCode());
-					}
+		try {
+			// request params - parsed on first use (preloaded body - always by framework decoder)
+			boolean formDecoder = appConfig.isFormDecoder() || getPreloadedBody(request) != null;
+			Map<String, RequestParam> params = new LazyRequestParams(request,
+					() -> processParameters(request, formDecoder), formDecoder);
+			ControllerData data = new ControllerData(request, response, controllerMethod, params, this, locale,
+					pathVariables);
 
-					request.getRequestDispatcher(appConfig.getErrorPath()).include(request, response);
-				} else {// other exceptions - show as internal server error
-					response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
-							"Internal server error! " + e.getMessage());
+			FrameworkUtils.dispatchToController(route.getFactory(), data);
 
-					if (appConfig.isAddErrorCause()) {
-						request.setAttribute("javax.servlet.error.exception", e);
-					}
+		} catch (Throwable e) {
+			sendException(e, request, response, appConfig);
+		}
+	}
 
-					request.getRequestDispatcher(appConfig.getErrorPath()).include(request, response);
-				}
+	/**
+	 * Sends error page for exception of controller ({@link WebAppException} - with
+	 * its code, other exceptions - internal server error)
+	 * 
+	 * @param e         exception
+	 * @param appConfig application configuration
+	 */
+	static void sendException(Throwable e, HttpServletRequest request, HttpServletResponse response,
+			WebAppConfig appConfig) throws ServletException, IOException {
+
+		if (e instanceof ClientAbortException) {// client closed connection - response cannot be sent
+			return;
+		}
+
+		if (e instanceof UncheckedIOException && e.getCause() instanceof RequestTooLargeException) {
+			// too large form, read by parameters decoder
+			e = new WebAppException(e.getCause().getMessage(), HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+					e.getCause());
+		}
+
+		if (e instanceof WebAppException) {// web application exception
+			WebAppException webExc = (WebAppException) e;
+			response.sendError(webExc.getCode(), webExc.getMessage());
+
+			if (appConfig.isAddErrorCause()) {
+				request.setAttribute("javax.servlet.error.exception", webExc);
+				request.setAttribute(ATTR_EXCEPTION_CODE, webExc.getCode());
 			}
-		} else {// controller not found - show error
-			response.sendError(HttpServletResponse.SC_NOT_FOUND, "Not found!");
+
 			request.getRequestDispatcher(appConfig.getErrorPath()).include(request, response);
+		} else {// other exceptions - show as internal server error
+			response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+					"Internal server error! " + e.getMessage());
+
+			if (appConfig.isAddErrorCause()) {
+				request.setAttribute("javax.servlet.error.exception", e);
+			}
+
+			request.getRequestDispatcher(appConfig.getErrorPath()).include(request, response);
+		}
+	}
+
+	/**
+	 * Sends response from cache, or calls controller and stores its response
+	 * 
+	 * @param cached cache declaration of controller
+	 * @param head   is HEAD request? (served from cache, but not stored)
+	 * @param path   normalized request path
+	 */
+	private void dispatchCached(HttpServletRequest request, HttpServletResponse response, ControllerRoute route,
+			CachedResponse cached, boolean head, String path, PathVariables pathVariables, Locale locale)
+			throws ServletException, IOException {
+
+		// compressed and uncompressed responses are separate entries
+		String encoding = appConfig.isCompression() ? Compression.negotiate(request.getHeader("Accept-Encoding"))
+				: null;
+		String key = ResponseCache.key(request, path, cached, locale, encoding);
+		if (responseCache.serve(key, request, response, head)) {
+			return;
+		}
+
+		// HEAD - without body, async controller - response is completed later (not stored)
+		if (head || AbstractAsyncController.class.isAssignableFrom(route.getController())) {
+			dispatch(request, response, route, HttpMethodType.GET, pathVariables, locale);
+			return;
+		}
+		CapturingResponse capturing = new CapturingResponse(response,
+				(int) Math.min(Integer.MAX_VALUE, appConfig.getResponseCacheSize() / 8));
+		dispatch(request, capturing, route, HttpMethodType.GET, pathVariables, locale);
+		if (!request.isAsyncStarted()) {// async started by controller - response is not complete yet
+			capturing.finish();
+			responseCache.store(key, capturing, cached.ttl());
 		}
 	}
 
+	/**
+	 * Has request body? (declared length, or chunked)
+	 */
+	private static boolean hasBody(HttpServletRequest request) {
+		return request.getContentLengthLong() > 0 || request.getHeader("Transfer-Encoding") != null;
+	}
+
 	/**
 	 * Process error
 	 * 
@@ -163,7 +362,7 @@ public class DispatcherServlet extends AbstractServlet implements Dispatcher {
 			pathOfError = pathOfError.substring(0, pathOfError.length() - 1);
 		}
 
-		Class<? extends AbstractController> controller = findErrorController(pathOfError);
+		ControllerFactory controller = findErrorController(pathOfError);
 
 		if (controller != null) {// if controller found, dispatch to it
 			try {
@@ -182,11 +381,18 @@ public class DispatcherServlet extends AbstractServlet implements Dispatcher {
 	public void redirect(Class<? extends AbstractController> controller, HttpServletRequest request,
 			HttpServletResponse response) throws IOException {
 
-		for (Entry<Path, Class<? extends AbstractController>> c : classes.entrySet()) {
-			if (c.getValue() == controller) {
-				redirect(c.getKey().value()[0], request, response);
-				break;
-			}
+		String contextPath = request.getContextPath();
+		boolean proxy = appConfig.isProxy();
+
+		RedirectUrls urls = redirectUrls;
+		if (urls == null || urls.proxy != proxy || !urls.contextPath.equals(contextPath)) {
+			urls = new RedirectUrls(contextPath, proxy, controllerPaths);
+			redirectUrls = urls;
+		}
+
+		String url = urls.urls.get(controller);
+		if (url != null) {
+			response.sendRedirect(url);
 		}
 	}
 
@@ -214,94 +420,111 @@ public class DispatcherServlet extends AbstractServlet implements Dispatcher {
 		return localeBundle;
 	}
 
+	@Override
+	public ResponseCache getResponseCache() {
+		return responseCache;
+	}
+
+	@Override
+	protected long getMaxBodySize() {
+		return appConfig.getMaxBodySize();
+	}
+
 	/**
-	 * Search controller for request
+	 * Creates factory of controller instances, or returns factory created before
+	 * for the same class
 	 * 
-	 * @param path request path
-	 * @return controller class, or null if not found
+	 * @param factories factories created during init
+	 * @throws ServletException controller has no public constructor with
+	 *                          ControllerData parameter, or stateless controller
+	 *                          cannot be created
 	 */
-	private Class<? extends AbstractController> findController(String path) {
-		String bestPath = "";
-		Class<? extends AbstractController> foundController = null;
-		Path foundPath = null;
+	private static ControllerFactory controllerFactory(Map<Class<?>, ControllerFactory> factories,
+			Class<?> controller) throws ServletException {
 
-		for (Entry<Path, Class<? extends AbstractController>> c : classes.entrySet()) {
-			Path p = c.getKey();
-
-			for (String s : p.value()) {
-				if (s.endsWith("/")) {
-					s = s.substring(0, s.length() - 1);
-				}
+		ControllerFactory factory = factories.get(controller);
+		if (factory == null) {
+			try {
+				factory = ControllerFactory.of(controller);
+			} catch (ReflectiveOperationException e) {
+				throw new ServletException("Cannot create controller: " + controller.getName(), e);
+			}
+			factories.put(controller, factory);
+		}
+		return factory;
+	}
 
-				if (path.length() >= s.length()) {
-					String tempPath = path.substring(0, s.length());
+	/**
+	 * Adds all paths of controller to route table
+	 */
+	private static void addRoute(RouteTrie.Builder<ControllerRoute> builder, ControllerRoute route) {
+		for (String s : route.getPath().value()) {
+			builder.add(s, route, route.getPath().redirectAfterPath());
+		}
+	}
 
-					if (tempPath.equalsIgnoreCase(s)) {
-						if (tempPath.length() >= bestPath.length()) {
-							bestPath = tempPath;
-							foundController = c.getValue();
-							foundPath = p;
-						}
-					}
+	/**
+	 * Methods allowed for path (value for Allow header)
+	 * 
+	 * @param path request path
+	 * @return allowed methods, or null if there is no controller for path
+	 */
+	private String findAllowedMethods(String path) {
+		StringBuilder allow = null;
+		boolean options = false;
+
+		for (Entry<HttpMethodType, RouteTrie<ControllerRoute>> r : routes.entrySet()) {
+			RouteTrie<ControllerRoute> table = r.getValue();
+			if (table.find(path, table.newCaptures()) != null) {
+				if (allow == null) {
+					allow = new StringBuilder();
+				} else {
+					allow.append(", ");
 				}
+				allow.append(r.getKey().name());
+				options |= r.getKey() == HttpMethodType.OPTIONS;
 			}
 		}
 
-		// redirect sub paths?
-		if (foundPath != null) {
-			if (!foundPath.redirectAfterPath()) {
-				if (!bestPath.equals(path)) {
-					return null;
-				}
-			}
+		if (allow != null && !options) {// OPTIONS is always answered
+			allow.append(", ").append(HttpMethodType.OPTIONS.name());
 		}
 
-		return foundController;
+		return allow != null ? allow.toString() : null;
 	}
 
 	/**
 	 * Search error controller
 	 * 
 	 * @param path request path before error occured
-	 * @return error controller class, or default controller class (if exists), or
-	 *         null if not found
+	 * @return error controller factory, or default controller factory (if exists),
+	 *         or null if not found
 	 */
-	private Class<? extends AbstractController> findErrorController(String path) {
-		Class<? extends AbstractController> defController = null;
-
-		String bestPath = "";
-		Class<? extends AbstractController> foundController = null;
+	private ControllerFactory findErrorController(String path) {
+		RouteTrie.Entry<ControllerFactory> entry = errorRoutes.find(path,
+				errorRoutes.newCaptures());
+		return entry != null ? entry.getValue() : defaultErrorController;
+	}
 
-		for (Entry<PathError, Class<? extends AbstractController>> c : classesErr.entrySet()) {
-			PathError pe = c.getKey();
+	/**
+	 * Redirect URLs of controllers, for context path and proxy mode
+	 */
+	private static class RedirectUrls {
+		private final String contextPath;
+		private final boolean proxy;
+		private final Map<Class<?>, String> urls;
 
-			if (pe.isDefault()) {// default error controller
-				defController = c.getValue();
-			} else {// otherwise, search by path
-				for (String s : pe.value()) {
-					if (s.endsWith("/")) {
-						s = s.substring(0, s.length() - 1);
-					}
+		private RedirectUrls(String contextPath, boolean proxy, Map<Class<?>, String> paths) {
 
-					if (path.length() >= s.length()) {
-						String tempPath = path.substring(0, s.length());
+			this.contextPath = contextPath;
+			this.proxy = proxy;
+			this.urls = new HashMap<>(paths.size() * 2);
 
-						if (tempPath.equalsIgnoreCase(s)) {
-							if (tempPath.length() >= bestPath.length()) {
-								bestPath = tempPath;
-								foundController = c.getValue();
-							}
-						}
-					}
-				}
+			for (Entry<Class<?>, String> p : paths.entrySet()) {
+				// with proxy - redirect to path only, without proxy - with context path
+				urls.put(p.getKey(), proxy ? p.getValue() : contextPath + p.getValue());
 			}
 		}
-
-		if (foundController == null) {
-			return defController;
-		} else {
-			return foundController;
-		}
 	}
 
 	/**
@@ -0,0 +1,111 @@
+package jss.webframework;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Entity tags of in-memory content - content is hashed by XXH64 (fast,
+ * non-cryptographic 64-bit hash).
+ *
+ * @author lukas
+ */
+final class ETags {
+	private static final long P1 = 0x9E3779B185EBCA87L;
+	private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long P3 = 0x165667B19E3779F9L;
+	private static final long P4 = 0x85EBCA77C2B2AE63L;
+	private static final long P5 = 0x27D4EB2F165667C5L;
+
+	private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+	private ETags() {
+	}
+
+	/**
+	 * Entity tag of content
+	 *
+	 * @param data     content (not compressed)
+	 * @param weak     weak tag? (W/ prefix - same for all content encodings)
+	 * @param encoding content encoding (for strong tag), or null
+	 * @return entity tag, with quotes
+	 */
+	static String of(byte[] data, boolean weak, String encoding) {
+		String hash = Long.toHexString(hash(data, 0, data.length));
+		if (weak) {
+			return "W/\"" + hash + "\"";
+		}
+		// strong tag must differ for each encoding of content
+		return encoding != null ? "\"" + hash + "-" + encoding + "\"" : "\"" + hash + "\"";
+	}
+
+	/**
+	 * XXH64 hash (seed 0)
+	 */
+	static long hash(byte[] data, int off, int len) {
+		int pos = off;
+		int end = off + len;
+		long h;
+
+		if (len >= 32) {
+			long v1 = P1 + P2;
+			long v2 = P2;
+			long v3 = 0;
+			long v4 = -P1;
+			int limit = end - 32;
+			do {
+				v1 = round(v1, (long) LONG.get(data, pos));
+				v2 = round(v2, (long) LONG.get(data, pos + 8));
+				v3 = round(v3, (long) LONG.get(data, pos + 16));
+				v4 = round(v4, (long) LONG.get(data, pos + 24));
+				pos += 32;
+			} while (pos <= limit);
+
+			h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+			h = merge(h, v1);
+			h = merge(h, v2);
+			h = merge(h, v3);
+			h = merge(h, v4);
+		} else {
+			h = P5;
+		}
+		h += len;
+
+		while (pos + 8 <= end) {
+			h ^= round(0, (long) LONG.get(data, pos));
+			h = Long.rotateLeft(h, 27) * P1 + P4;
+			pos += 8;
+		}
+		if (pos + 4 <= end) {
+			h ^= ((int) INT.get(data, pos) & 0xFFFFFFFFL) * P1;
+			h = Long.rotateLeft(h, 23) * P2 + P3;
+			pos += 4;
+		}
+		while (pos < end) {
+			h ^= (data[pos] & 0xFF) * P5;
+			h = Long.rotateLeft(h, 11) * P1;
+			pos++;
+		}
+
+		h ^= h >>> 33;
+		h *= P2;
+		h ^= h >>> 29;
+		h *= P3;
+		h ^= h >>> 32;
+		return h;
+	}
+
+	private static long round(long acc, long input) {
+		acc += input * P2;
+		acc = Long.rotateLeft(acc, 31);
+		return acc * P1;
+	}
+
+	private static long merge(long acc, long value) {
+		acc ^= round(0, value);
+		return acc * P1 + P4;
+	}
+
+}
@@ -0,0 +1,315 @@
+package jss.webframework;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Sends file as response: validators (ETag, Last-Modified) with 304, byte
+ * ranges (Range, If-Range) with 206 - single range or multipart/byteranges.
+ * File content is not read to heap - it is sent by container (Tomcat sendfile)
+ * when possible, or transferred from file channel.
+ *
+ * @author lukas
+ */
+final class FileResponse {
+	private static final int MAX_RANGES = 16;
+	private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+	private FileResponse() {
+	}
+
+	/**
+	 * Sends file. Content type should be already set.
+	 *
+	 * @param file     file to send
+	 * @param request  request
+	 * @param response response
+	 * @param head     is HEAD request? (without body)
+	 * @throws WebAppException file not found (404)
+	 */
+	static void send(java.nio.file.Path file, HttpServletRequest request, HttpServletResponse response, boolean head)
+			throws IOException, WebAppException {
+
+		BasicFileAttributes attrs;
+		try {
+			attrs = Files.readAttributes(file, BasicFileAttributes.class);
+		} catch (IOException e) {
+			throw new WebAppException("File not found!", HttpServletResponse.SC_NOT_FOUND, e);
+		}
+		if (!attrs.isRegularFile()) {
+			throw new WebAppException("File not found!", HttpServletResponse.SC_NOT_FOUND);
+		}
+
+		long size = attrs.size();
+		long lastModified = attrs.lastModifiedTime().toMillis() / 1000 * 1000;// HTTP date has seconds
+		String etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+
+		response.setHeader("ETag", etag);
+		response.setDateHeader("Last-Modified", lastModified);
+		response.setHeader("Accept-Ranges", "bytes");
+
+		String method = request.getMethod();
+		boolean safe = HttpMethodType.GET.name().equals(method) || HttpMethodType.HEAD.name().equals(method);
+		if (safe && notModified(request, etag, lastModified)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
+		List<long[]> ranges = null;
+		String range = request.getHeader("Range");
+		if (range != null && safe && ifRange(request, etag, lastModified)) {
+			ranges = parseRanges(range, size);
+			if (ranges != null && ranges.isEmpty()) {// no satisfiable range
+				response.setHeader("Content-Range", "bytes */" + size);
+				response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				return;
+			}
+		}
+
+		if (ranges == null) {// whole file
+			response.setContentLengthLong(size);
+			if (!head) {
+				sendRange(file, 0, size, request, response);
+			}
+		} else if (ranges.size() == 1) {// single range
+			long[] r = ranges.get(0);
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			response.setHeader("Content-Range", "bytes " + r[0] + "-" + (r[1] - 1) + "/" + size);
+			response.setContentLengthLong(r[1] - r[0]);
+			if (!head) {
+				sendRange(file, r[0], r[1], request, response);
+			}
+		} else {// multipart/byteranges
+			sendMultipart(file, size, ranges, request, response, head);
+		}
+	}
+
+	/**
+	 * Checks If-None-Match, or If-Modified-Since (when there is no If-None-Match)
+	 * 
+	 * @param etag         current entity tag, or null
+	 * @param lastModified last modification time (seconds precision), or -1
+	 */
+	static boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			return etag != null && matchesEtag(ifNoneMatch, etag, true);
+		}
+
+		if (lastModified >= 0) {
+			long ifModifiedSince = dateHeader(request, "If-Modified-Since");
+			return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+		}
+		return false;
+	}
+
+	/**
+	 * Checks list of entity tags, e.g. {@code "a", W/"b"} or {@code *}
+	 *
+	 * @param header header value
+	 * @param etag   current entity tag
+	 * @param weak   weak comparison? (ignore W/ prefix)
+	 */
+	static boolean matchesEtag(String header, String etag, boolean weak) {
+		String tag = weak && etag.startsWith("W/") ? etag.substring(2) : etag;
+		int pos = 0;
+		while (pos < header.length()) {
+			int comma = header.indexOf(',', pos);
+			if (comma < 0) {
+				comma = header.length();
+			}
+			String item = header.substring(pos, comma).trim();
+			pos = comma + 1;
+
+			if (item.equals("*")) {
+				return true;
+			}
+			if (item.startsWith("W/")) {
+				if (!weak) {
+					continue;// weak tags never match strongly
+				}
+				item = item.substring(2);
+			}
+			if (item.equals(tag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Is range applicable? (If-Range with current ETag or date, or no If-Range)
+	 */
+	private static boolean ifRange(HttpServletRequest request, String etag, long lastModified) {
+		String ifRange = request.getHeader("If-Range");
+		if (ifRange == null) {
+			return true;
+		}
+		ifRange = ifRange.trim();
+		if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+			return matchesEtag(ifRange, etag, false);
+		}
+		return dateHeader(request, "If-Range") == lastModified;
+	}
+
+	/**
+	 * Parses Range header
+	 *
+	 * @return ranges (start, end exclusive), empty list if no range is
+	 *         satisfiable, or null if header is invalid (whole file is sent)
+	 */
+	static List<long[]> parseRanges(String header, long size) {
+		if (!header.startsWith("bytes=")) {
+			return null;
+		}
+
+		List<long[]> ranges = new ArrayList<>();
+		for (String spec : header.substring(6).split(",")) {
+			spec = spec.trim();
+			int dash = spec.indexOf('-');
+			if (dash < 0) {
+				return null;
+			}
+
+			long start;
+			long end;
+			try {
+				if (dash == 0) {// suffix - last n bytes
+					start = Math.max(0, size - Long.parseLong(spec.substring(1)));
+					end = size;
+				} else {
+					start = Long.parseLong(spec.substring(0, dash));
+					if (dash == spec.length() - 1) {// to end of file
+						end = size;
+					} else {
+						long last = Long.parseLong(spec.substring(dash + 1));
+						if (last < start) {// invalid range - header is ignored
+							return null;
+						}
+						end = Math.min(last + 1, size);
+					}
+				}
+			} catch (NumberFormatException e) {
+				return null;
+			}
+			if (start < 0) {
+				return null;
+			}
+
+			if (start < end) {// satisfiable
+				ranges.add(new long[] { start, end });
+			}
+			if (ranges.size() > MAX_RANGES) {// too many - send whole file
+				return null;
+			}
+		}
+		return ranges;
+	}
+
+	/**
+	 * Sends range of file (start, end exclusive) as body
+	 */
+	private static void sendRange(java.nio.file.Path file, long start, long end, HttpServletRequest request,
+			HttpServletResponse response) throws IOException {
+
+		if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {// container sends file
+			request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+			request.setAttribute(SENDFILE_START, start);
+			request.setAttribute(SENDFILE_END, end);
+			return;
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			transfer(channel, start, end, response.getOutputStream());
+		}
+	}
+
+	/**
+	 * Sends ranges as multipart/byteranges
+	 */
+	private static void sendMultipart(java.nio.file.Path file, long size, List<long[]> ranges,
+			HttpServletRequest request, HttpServletResponse response, boolean head) throws IOException {
+
+		String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong())
+				+ Long.toHexString(ThreadLocalRandom.current().nextLong());
+		String contentType = response.getContentType();
+
+		// headers of parts, and length of whole body
+		byte[][] headers = new byte[ranges.size()][];
+		long length = 0;
+		for (int i = 0; i < ranges.size(); i++) {
+			long[] r = ranges.get(i);
+			StringBuilder sb = new StringBuilder("\r\n--").append(boundary).append("\r\n");
+			if (contentType != null) {
+				sb.append("Content-Type: ").append(contentType).append("\r\n");
+			}
+			sb.append("Content-Range: bytes ").append(r[0]).append('-').append(r[1] - 1).append('/').append(size)
+					.append("\r\n\r\n");
+			headers[i] = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+			length += headers[i].length + r[1] - r[0];
+		}
+		byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+		length += end.length;
+
+		response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+		response.setContentType("multipart/byteranges; boundary=" + boundary);
+		response.setContentLengthLong(length);
+		if (head) {
+			return;
+		}
+
+		ServletOutputStream out = response.getOutputStream();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			for (int i = 0; i < ranges.size(); i++) {
+				out.write(headers[i]);
+				transfer(channel, ranges.get(i)[0], ranges.get(i)[1], out);
+			}
+		}
+		out.write(end);
+	}
+
+	/**
+	 * Transfers range of file channel to output (by transferTo - without copying
+	 * file to heap)
+	 */
+	private static void transfer(FileChannel channel, long start, long end, OutputStream out) throws IOException {
+		WritableByteChannel target = Channels.newChannel(out);
+		long position = start;
+		while (position < end) {
+			long n = channel.transferTo(position, end - position, target);
+			if (n <= 0) {// file truncated
+				throw new IOException("File changed while sending!");
+			}
+			position += n;
+		}
+	}
+
+	/**
+	 * Date header, or -1 if missing or invalid
+	 */
+	private static long dateHeader(HttpServletRequest request, String name) {
+		try {
+			return request.getDateHeader(name);
+		} catch (IllegalArgumentException e) {
+			return -1;
+		}
+	}
+
+}
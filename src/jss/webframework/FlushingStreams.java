@@ -0,0 +1,154 @@
+package jss.webframework;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * Response streams for streaming views - data is sent to client every flush
+ * interval, errors of response stream (client closed connection) are reported
+ * as {@link ClientAbortException}. Closing does not close response stream.
+ *
+ * @author lukas
+ */
+final class FlushingStreams {
+
+	private FlushingStreams() {
+	}
+
+	/**
+	 * Binary response stream
+	 */
+	static final class Output extends OutputStream {
+		private final OutputStream out;
+		private final int interval;
+		private int pending = 0;// bytes written since last flush
+
+		/**
+		 * @param out      response stream
+		 * @param interval flush interval in bytes (0 - flush only at end)
+		 */
+		Output(OutputStream out, int interval) {
+			this.out = out;
+			this.interval = interval;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			try {
+				out.write(b);
+			} catch (IOException e) {
+				throw new ClientAbortException(e);
+			}
+			written(1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			try {
+				out.write(b, off, len);
+			} catch (IOException e) {
+				throw new ClientAbortException(e);
+			}
+			written(len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			pending = 0;
+			try {
+				out.flush();
+			} catch (IOException e) {
+				throw new ClientAbortException(e);
+			}
+		}
+
+		@Override
+		public void close() {
+			// response stream is closed by container
+		}
+
+		private void written(int n) throws IOException {
+			pending += n;
+			if (interval > 0 && pending >= interval) {
+				flush();
+			}
+		}
+	}
+
+	/**
+	 * Text response stream
+	 */
+	static final class Text extends Writer {
+		private final Writer out;
+		private final int interval;
+		private int pending = 0;// chars written since last flush
+
+		/**
+		 * @param out      response writer
+		 * @param interval flush interval in chars (0 - flush only at end)
+		 */
+		Text(Writer out, int interval) {
+			this.out = out;
+			this.interval = interval;
+		}
+
+		@Override
+		public void write(int c) throws IOException {
+			try {
+				out.write(c);
+			} catch (IOException e) {
+				throw new ClientAbortException(e);
+			}
+			written(1);
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			try {
+				out.write(cbuf, off, len);
+			} catch (IOException e) {
+				throw new ClientAbortException(e);
+			}
+			written(len);
+		}
+
+		@Override
+		public void write(String str, int off, int len) throws IOException {
+			try {
+				out.write(str, off, len);
+			} catch (IOException e) {
+				throw new ClientAbortException(e);
+			}
+			written(len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			pending = 0;
+			try {
+				out.flush();
+			} catch (IOException e) {
+				throw new ClientAbortException(e);
+			}
+			// PrintWriter of response does not throw - check error state
+			if (out instanceof PrintWriter && ((PrintWriter) out).checkError()) {
+				throw new ClientAbortException(null);
+			}
+		}
+
+		@Override
+		public void close() {
+			// response writer is closed by container
+		}
+
+		private void written(int n) throws IOException {
+			pending += n;
+			if (interval > 0 && pending >= interval) {
+				flush();
+			}
+		}
+	}
+
+}
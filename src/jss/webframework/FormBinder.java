@@ -0,0 +1,214 @@
+package jss.webframework;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import jss.webframework.RequestParam.FileInfo;
+
+/**
+ * Fills form object with request parameters. Field of form object is filled
+ * with parameter with the same name. Binder is created once for each form
+ * class (fields are resolved to method handles), binding is only parsing and
+ * field writes.
+ * <p>
+ * Supported field types: String, String[], int, long, double, boolean (and
+ * their wrappers), enums, {@link FileInfo}, FileInfo[] and
+ * {@link RequestParam}. Static, final and transient fields are skipped. Field
+ * is not changed, when there is no parameter, or value is invalid.
+ *
+ * @author lukas
+ */
+final class FormBinder {
+
+	private static final ClassValue<FormBinder> BINDERS = new ClassValue<FormBinder>() {
+		@Override
+		protected FormBinder computeValue(Class<?> type) {
+			return new FormBinder(type);
+		}
+	};
+
+	private final MethodHandle constructor;// () -> Object
+	private final FieldCodec[] fields;
+
+	private FormBinder(Class<?> type) {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+			Constructor<?> c = type.getDeclaredConstructor();
+			c.setAccessible(true);
+			this.constructor = lookup.unreflectConstructor(c).asType(MethodType.methodType(Object.class));
+
+			List<FieldCodec> list = new ArrayList<>();
+			for (Class<?> t = type; t != null && t != Object.class; t = t.getSuperclass()) {
+				for (Field f : t.getDeclaredFields()) {
+					int mod = f.getModifiers();
+					if (Modifier.isStatic(mod) || Modifier.isFinal(mod) || Modifier.isTransient(mod)
+							|| f.isSynthetic()) {
+						continue;
+					}
+
+					f.setAccessible(true);
+					FieldCodec codec = FieldCodec.of(f, lookup.unreflectSetter(f));
+					if (codec != null) {
+						list.add(codec);
+					}
+				}
+			}
+			this.fields = list.toArray(new FieldCodec[list.size()]);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			throw new IllegalArgumentException("Cannot bind form class " + type.getName() + ": " + e.getMessage(),
+					e);
+		}
+	}
+
+	/**
+	 * Creates form object, and fills it with parameters
+	 *
+	 * @param type   form class (with no-argument constructor)
+	 * @param params request parameters
+	 * @return form object
+	 * @throws IllegalArgumentException class cannot be used as form
+	 */
+	static <T> T bind(Class<T> type, Map<String, RequestParam> params) {
+		FormBinder binder = BINDERS.get(type);
+		try {
+			Object form = binder.constructor.invokeExact();
+			for (FieldCodec field : binder.fields) {
+				RequestParam param = params.get(field.name);
+				if (param != null) {
+					field.set(form, param);
+				}
+			}
+			return type.cast(form);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Writes parameter to single field
+	 */
+	private static abstract class FieldCodec {
+		final String name;
+		final MethodHandle setter;
+
+		FieldCodec(Field field, MethodHandle setter, Class<?> valueType) {
+			this.name = field.getName();
+			this.setter = setter.asType(MethodType.methodType(void.class, Object.class, valueType));
+		}
+
+		abstract void set(Object form, RequestParam param) throws Throwable;
+
+		/**
+		 * @return codec for field, or null if type of field is not supported
+		 */
+		static FieldCodec of(Field field, MethodHandle setter) {
+			Class<?> type = field.getType();
+			if (type == String.class) {
+				return new FieldCodec(field, setter, String.class) {
+					@Override
+					void set(Object form, RequestParam param) throws Throwable {
+						String value = param.getSingleValue();
+						if (value != null) {
+							this.setter.invokeExact(form, value);
+						}
+					}
+				};
+			} else if (type == String[].class) {
+				return new FieldCodec(field, setter, String[].class) {
+					@Override
+					void set(Object form, RequestParam param) throws Throwable {
+						this.setter.invokeExact(form, param.getMultipleValues());
+					}
+				};
+			} else if (type == int.class || type == Integer.class) {// wrappers are boxed by setter
+				return new FieldCodec(field, setter, int.class) {
+					@Override
+					void set(Object form, RequestParam param) throws Throwable {
+						String value = param.getSingleValue();
+						if (ParamParser.isInt(value)) {
+							this.setter.invokeExact(form, ParamParser.parseInt(value, 0));
+						}
+					}
+				};
+			} else if (type == long.class || type == Long.class) {
+				return new FieldCodec(field, setter, long.class) {
+					@Override
+					void set(Object form, RequestParam param) throws Throwable {
+						String value = param.getSingleValue();
+						if (ParamParser.isLong(value)) {
+							this.setter.invokeExact(form, ParamParser.parseLong(value, 0L));
+						}
+					}
+				};
+			} else if (type == double.class || type == Double.class) {
+				return new FieldCodec(field, setter, double.class) {
+					@Override
+					void set(Object form, RequestParam param) throws Throwable {
+						double v = ParamParser.parseDouble(param.getSingleValue(), Double.NaN);
+						if (!Double.isNaN(v)) {
+							this.setter.invokeExact(form, v);
+						}
+					}
+				};
+			} else if (type == boolean.class || type == Boolean.class) {
+				return new FieldCodec(field, setter, boolean.class) {
+					@Override
+					void set(Object form, RequestParam param) throws Throwable {
+						// checkbox - parameter without value means true, last value wins (hidden + checkbox)
+						String[] values = param.getMultipleValues();
+						String value = values.length > 0 ? values[values.length - 1] : null;
+						boolean v = value == null || value.isEmpty() || ParamParser.parseBoolean(value, false);
+						this.setter.invokeExact(form, v);
+					}
+				};
+			} else if (type.isEnum()) {
+				return new FieldCodec(field, setter, Object.class) {
+					@SuppressWarnings({ "unchecked", "rawtypes" })
+					@Override
+					void set(Object form, RequestParam param) throws Throwable {
+						Object v = ParamParser.parseEnum(param.getSingleValue(), (Class) type, null);
+						if (v != null) {
+							this.setter.invokeExact(form, v);
+						}
+					}
+				};
+			} else if (type == FileInfo.class) {
+				return new FieldCodec(field, setter, FileInfo.class) {
+					@Override
+					void set(Object form, RequestParam param) throws Throwable {
+						FileInfo file = param.getSingleFile();
+						if (file != null) {
+							this.setter.invokeExact(form, file);
+						}
+					}
+				};
+			} else if (type == FileInfo[].class) {
+				return new FieldCodec(field, setter, FileInfo[].class) {
+					@Override
+					void set(Object form, RequestParam param) throws Throwable {
+						this.setter.invokeExact(form, param.getMultipleFiles());
+					}
+				};
+			} else if (type == RequestParam.class) {
+				return new FieldCodec(field, setter, RequestParam.class) {
+					@Override
+					void set(Object form, RequestParam param) throws Throwable {
+						this.setter.invokeExact(form, param);
+					}
+				};
+			}
+			return null;
+		}
+	}
+
+}
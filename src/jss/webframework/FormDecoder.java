@@ -0,0 +1,93 @@
+package jss.webframework;
+
+import java.nio.charset.Charset;
+import java.util.Map;
+
+/**
+ * Decoder of query string and application/x-www-form-urlencoded body. Data is
+ * decoded in one pass, in place (into the same byte array), every name and
+ * value is decoded exactly once.
+ * 
+ * @author lukas
+ */
+final class FormDecoder {
+
+	private FormDecoder() {
+	}
+
+	/**
+	 * Decodes parameters and adds them to map. Array is overwritten with decoded
+	 * data.
+	 * 
+	 * @param data    encoded data
+	 * @param length  length of data in array
+	 * @param charset charset of data
+	 * @param params  map of parameters, decoded values are added to it
+	 */
+	static void decode(byte[] data, int length, Charset charset, Map<String, RequestParam> params) {
+		int r = 0;// read position
+		int w = 0;// write position, always <= read position
+
+		while (r < length) {
+			// name
+			int nameStart = w;
+			while (r < length && data[r] != '=' && data[r] != '&') {
+				r = decodeByte(data, length, r, w++);
+			}
+			int nameEnd = w;
+
+			// value
+			int valueStart = w;
+			if (r < length && data[r] == '=') {
+				r++;
+				while (r < length && data[r] != '&') {
+					r = decodeByte(data, length, r, w++);
+				}
+			}
+			int valueEnd = w;
+			r++;// skip '&'
+
+			if (nameEnd > nameStart) {
+				String name = new String(data, nameStart, nameEnd - nameStart, charset);
+				String value = new String(data, valueStart, valueEnd - valueStart, charset);
+
+				RequestParam param = params.get(name);
+				if (param != null) {
+					param.getValuesInternalList().add(value);
+				} else {
+					params.put(name, new RequestParam(name, new String[] { value }));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Decodes single byte (or escape sequence) from position r to position w
+	 * 
+	 * @return next read position
+	 */
+	private static int decodeByte(byte[] data, int length, int r, int w) {
+		byte b = data[r];
+		if (b == '+') {
+			data[w] = ' ';
+		} else if (b == '%' && r + 2 < length && hex(data[r + 1]) > -1 && hex(data[r + 2]) > -1) {
+			data[w] = (byte) ((hex(data[r + 1]) << 4) | hex(data[r + 2]));
+			return r + 3;
+		} else {// other char, or invalid escape sequence - as is
+			data[w] = b;
+		}
+		return r + 1;
+	}
+
+	private static int hex(byte b) {
+		if (b >= '0' && b <= '9') {
+			return b - '0';
+		} else if (b >= 'a' && b <= 'f') {
+			return b - 'a' + 10;
+		} else if (b >= 'A' && b <= 'F') {
+			return b - 'A' + 10;
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,147 @@
+package jss.webframework;
+
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletException;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Cache of rendered JSP fragments (prepend and append files of views), by path
+ * and key declared by view. Fragment is rendered once to buffer, and its
+ * output is written directly on next requests, until TTL expires.
+ *
+ * @author lukas
+ */
+final class FragmentCache {
+	private static final int MAX_FRAGMENTS = 1024;
+
+	private final ConcurrentHashMap<String, Fragment> fragments = new ConcurrentHashMap<>();
+
+	/**
+	 * Includes fragment - from cache, or rendered and cached
+	 *
+	 * @param jsp      dispatcher of fragment
+	 * @param path     path of fragment
+	 * @param key      key declared by view
+	 * @param ttl      time to live in seconds
+	 * @param request  request
+	 * @param response response
+	 */
+	void include(RequestDispatcher jsp, String path, String key, long ttl, HttpServletRequest request,
+			HttpServletResponse response) throws ServletException, IOException {
+
+		String id = path + '\n' + key;
+		Fragment fragment = fragments.get(id);
+		if (fragment == null || fragment.expires <= System.currentTimeMillis()) {
+			BufferingResponse buffer = new BufferingResponse(response);
+			jsp.include(request, buffer);
+			fragment = new Fragment(buffer.getContent(), System.currentTimeMillis() + ttl * 1000);
+			store(id, fragment);
+		}
+		response.getWriter().write(fragment.content);
+	}
+
+	private void store(String id, Fragment fragment) {
+		if (fragments.size() >= MAX_FRAGMENTS && !fragments.containsKey(id)) {
+			long now = System.currentTimeMillis();
+			fragments.values().removeIf(f -> f.expires <= now);
+			if (fragments.size() >= MAX_FRAGMENTS) {// too many keys - not cached
+				return;
+			}
+		}
+		fragments.put(id, fragment);
+	}
+
+	/**
+	 * Rendered fragment
+	 */
+	private static final class Fragment {
+		private final String content;
+		private final long expires;
+
+		private Fragment(String content, long expires) {
+			this.content = content;
+			this.expires = expires;
+		}
+	}
+
+	/**
+	 * Response wrapper, which keeps output in memory (text, or bytes decoded with
+	 * response encoding)
+	 */
+	private static final class BufferingResponse extends HttpServletResponseWrapper {
+		private final CharArrayWriter chars = new CharArrayWriter();
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private PrintWriter writer;
+		private ServletOutputStream stream;
+
+		private BufferingResponse(HttpServletResponse response) {
+			super(response);
+		}
+
+		@Override
+		public PrintWriter getWriter() {
+			if (writer == null) {
+				writer = new PrintWriter(chars);
+			}
+			return writer;
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() {
+			if (stream == null) {
+				stream = new ServletOutputStream() {
+					@Override
+					public void write(int b) {
+						bytes.write(b);
+					}
+
+					@Override
+					public void write(byte[] b, int off, int len) {
+						bytes.write(b, off, len);
+					}
+
+					@Override
+					public boolean isReady() {
+						return true;
+					}
+
+					@Override
+					public void setWriteListener(WriteListener writeListener) {
+						throw new IllegalStateException("Non-blocking write is not supported!");
+					}
+				};
+			}
+			return stream;
+		}
+
+		@Override
+		public void flushBuffer() {
+			// output is kept in memory
+		}
+
+		@Override
+		public void resetBuffer() {
+			chars.reset();
+			bytes.reset();
+		}
+
+		private String getContent() throws UnsupportedEncodingException {
+			if (writer != null) {
+				writer.flush();
+			}
+			return chars.toString() + bytes.toString(getCharacterEncoding());
+		}
+	}
+
+}
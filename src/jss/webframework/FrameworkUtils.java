@@ -1,18 +1,20 @@
 package jss.webframework;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.CompletionStage;
 
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import jss.webframework.AbstractView.ViewType;
 
@@ -23,9 +25,35 @@ import jss.webframework.AbstractView.ViewType;
  */
 class FrameworkUtils {
 
+	/**
+	 * Gets classes from controller registries (generated at compile time), which
+	 * belong to the given package and subpackages.
+	 * 
+	 * @param packageName The base package
+	 * @return The classes, or null if there is no registry with classes from the
+	 *         package
+	 */
+	static List<Class<?>> getRegisteredClasses(String packageName) {
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		String prefix = packageName + ".";
+
+		List<Class<?>> classes = new ArrayList<Class<?>>();
+		for (ControllerRegistry registry : ServiceLoader.load(ControllerRegistry.class, classLoader)) {
+			for (Class<?> c : registry.getControllers()) {
+				if (c.getName().startsWith(prefix)) {
+					classes.add(c);
+				}
+			}
+		}
+
+		return classes.isEmpty() ? null : classes;
+	}
+
 	/**
 	 * Scans all classes accessible from the context class loader which belong to
-	 * the given package and subpackages.
+	 * the given package and subpackages, and have {@link Path} or
+	 * {@link PathError} annotation. Class files are read without loading classes
+	 * - only found classes are loaded.
 	 *
 	 * @param packageName The base package
 	 * @return The classes
@@ -35,121 +63,372 @@ class FrameworkUtils {
 	static List<Class<?>> getClasses(String packageName) throws ClassNotFoundException, IOException {
 		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
 		assert classLoader != null;
-		String path = packageName.replace('.', '/');
-
-		Enumeration<URL> resources = classLoader.getResources(path);
-		List<File> dirs = new ArrayList<File>();
-		while (resources.hasMoreElements()) {
-			URL resource = resources.nextElement();
-			dirs.add(new File(resource.getFile()));
-		}
 
+		ClassFileScanner scanner = new ClassFileScanner(Path.class, PathError.class);
 		List<Class<?>> classes = new ArrayList<Class<?>>();
-		for (File directory : dirs) {
-			classes.addAll(findClasses(directory, packageName));
+		for (String name : scanner.scan(classLoader, packageName)) {
+			classes.add(Class.forName(name, false, classLoader));
 		}
 
 		return classes;
 	}
 
 	/**
-	 * Recursive method used to find all classes in a given directory and subdirs.
-	 *
-	 * @param directory   The base directory
-	 * @param packageName The package name for classes found inside the base
-	 *                    directory
-	 * @return The classes
-	 * @throws ClassNotFoundException
+	 * Przekazuje sterowanie do kontrolera
+	 * 
+	 * @param factory fabryka kontrolera
+	 * @param data    dane do kontrolera
 	 */
-	private static List<Class<?>> findClasses(File directory, String packageName) throws ClassNotFoundException {
-		List<Class<?>> classes = new ArrayList<Class<?>>();
-		if (!directory.exists()) {
-			return classes;
+	static void dispatchToController(ControllerFactory factory, ControllerData data)
+			throws ServletException, IOException, WebAppException {
+
+		if (factory.isStateless()) {// kontroler bezstanowy - jedna instancja
+			StatelessController controller = factory.getStatelessInstance();
+			try {
+				if (notModified(controller.getETag(data), controller.getLastModified(data), data)) {
+					return;
+				}
+				writeView(controller.handle(data), data);
+			} finally {
+				controller.endJob(data);// end job
+			}
+			return;
 		}
-		File[] files = directory.listFiles();
-		for (File file : files) {
-			if (file.isDirectory()) {
-				assert !file.getName().contains(".");
-				classes.addAll(findClasses(file, packageName + "." + file.getName()));
-			} else if (file.getName().endsWith(".class")) {
-				classes.add(
-						Class.forName(packageName + '.' + file.getName().substring(0, file.getName().length() - 6)));
+
+		AbstractController controller = null;// controller
+
+		try {
+			controller = factory.newInstance(data);
+			if (notModified(controller.getETag(), controller.getLastModified(), data)) {
+				return;// not modified - without controller job
+			}
+
+			HttpServletRequest request = data.getRequest();
+			if (controller instanceof AbstractAsyncController && request.isAsyncSupported()
+					&& !request.isAsyncStarted()) {// kontroler asynchroniczny - bez blokowania wątku
+				CompletionStage<AbstractView> stage = ((AbstractAsyncController) controller).doJobAsync();
+				if (stage != null) {
+					AsyncViewWriter.start(controller, data, stage,
+							data.getDispatcher().getAppConfig().getAsyncTimeout());
+					controller = null;// job is ended after view
+				}
+				return;
+			}
+
+			writeView(controller.doJob(), data);// do controller job
+		} finally {
+			if (controller != null) {
+				controller.endJob();// end job
 			}
 		}
-		return classes;
 	}
 
 	/**
-	 * Przekazuje sterowanie do kontrolera
+	 * Ustawia walidatory podane przez kontroler (ETag, Last-Modified) i sprawdza
+	 * warunki żądania GET i HEAD - gdy zasób nie był zmieniony, wysyła 304
 	 * 
-	 * @param clazz klasa kontrolera
-	 * @param data  dane do kontrolera
+	 * @param etag         ETag, lub null
+	 * @param lastModified czas modyfikacji, lub -1
+	 * @return czy wysłano 304?
 	 */
-	static void dispatchToController(Class<? extends AbstractController> clazz, ControllerData data)
-			throws ServletException, IOException, InstantiationException, IllegalAccessException,
-			IllegalArgumentException, InvocationTargetException, NoSuchMethodException, SecurityException,
-			WebAppException {
+	private static boolean notModified(String etag, long lastModified, ControllerData data) {
+		if (etag == null && lastModified < 0) {
+			return false;
+		}
+		if (!isConditional(data.getRequest().getMethod())) {
+			return false;
+		}
+		HttpServletResponse response = data.getResponse();
 
-		ServletContext ctx = data.getDispatcher().getServletContext();
-		Constructor<? extends AbstractController> constructor = clazz.getConstructor(ControllerData.class);
+		lastModified = lastModified >= 0 ? lastModified / 1000 * 1000 : -1;// data HTTP ma sekundy
+		if (etag != null) {
+			response.setHeader("ETag", etag);
+		}
+		if (lastModified >= 0) {
+			response.setDateHeader("Last-Modified", lastModified);
+		}
+		if (FileResponse.notModified(data.getRequest(), etag, lastModified)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return true;
+		}
+		return false;
+	}
 
-		AbstractController controller = null;// controller
+	/**
+	 * Wysyła obiekt jako JSON - mała odpowiedź jest buforowana (Content-Length,
+	 * ETag, kompresja jak dla treści w pamięci), większa wysyłana strumieniowo
+	 * 
+	 * @param head     czy żądanie HEAD? (bez treści - nagłówki jak dla GET)
+	 * @param encoding wynegocjowane kodowanie, lub null
+	 */
+	private static void writeJson(AbstractView view, ControllerData data, boolean head, String encoding)
+			throws IOException {
+		WebAppConfig config = data.getDispatcher().getAppConfig();
+		HttpServletResponse response = data.getResponse();
+		if (view.getContentType() == null) {
+			response.setContentType("application/json; charset=UTF-8");
+		}
+
+		boolean compress = encoding != null && !response.containsHeader("Content-Encoding")
+				&& Compression.isCompressible(response.getContentType(), config.getCompressionMimeTypes());
+		boolean etag = isAutoEtag(view, data);
+		if (head && !etag && !compress) {// HEAD bez walidatora i kompresji - bez serializacji
+			return;
+		}
 
+		JsonWriter json = new JsonWriter(config.getJsonBufferSize(), () -> {
+			// większa odpowiedź - strumieniowo, bez Content-Length
+			if (compress) {
+				response.setHeader("Content-Encoding", encoding);
+			}
+			if (head) {// HEAD - nagłówki jak dla strumienia, serializacja przerywana
+				throw new JsonHeadStreamed();
+			}
+			OutputStream out = new FlushingStreams.Output(response.getOutputStream(), 0);
+			return compress ? Compression.stream(out, encoding) : out;
+		});
+		boolean written = false;
 		try {
-			controller = constructor.newInstance(data);
-			AbstractView view = controller.doJob();// do controller job
+			json.value(view.getJson());
+			if (json.isStreamed()) {
+				json.close();
+			}
+			written = true;
+		} catch (JsonHeadStreamed e) {
+			return;
+		} finally {
+			if (!written) {// błąd - zwolnienie kompresji
+				json.abort();
+			}
+		}
+
+		if (!json.isStreamed()) {
+			writeBytes(view, view.getJson(), json.toByteArray(), data, head, encoding, etag);
+		}
+	}
+
+	/**
+	 * Przerwanie serializacji JSON dla HEAD, gdy treść przekracza bufor
+	 */
+	private static final class JsonHeadStreamed extends IOException {
+		private static final long serialVersionUID = 1L;
 
-			if (view != null) {
-				String contentType = view.getContentType();
-				if (contentType != null) {// typ odpowiedzi
-					data.getResponse().setContentType(contentType);
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;// bez śladu stosu - nie jest błędem
+		}
+	}
+
+	/**
+	 * Czy wysłać automatyczny ETag treści? (włączony, GET lub HEAD z kodem 200,
+	 * bez ETag kontrolera)
+	 */
+	private static boolean isAutoEtag(AbstractView view, ControllerData data) {
+		return data.getDispatcher().getAppConfig().isAutoEtag() && isConditional(data.getRequest().getMethod())
+				&& (view.getCode() == null || view.getCode() == HttpServletResponse.SC_OK)
+				&& !data.getResponse().containsHeader("ETag");
+	}
+
+	/**
+	 * Czy metoda żądania obsługuje warunki If-None-Match i If-Modified-Since?
+	 */
+	private static boolean isConditional(String method) {
+		return HttpMethodType.GET.name().equals(method) || HttpMethodType.HEAD.name().equals(method);
+	}
+
+	/**
+	 * Nagłówek Content-Disposition dla pobieranego pliku (nazwa ASCII i UTF-8)
+	 */
+	private static String contentDisposition(String fileName) {
+		StringBuilder ascii = new StringBuilder();
+		for (int i = 0; i < fileName.length(); i++) {
+			char c = fileName.charAt(i);
+			ascii.append(c >= 0x20 && c < 0x7F && c != '"' && c != '\\' ? c : '_');
+		}
+		String encoded = URLEncoder.encode(fileName, StandardCharsets.UTF_8).replace("+", "%20");
+		return "attachment; filename=\"" + ascii + "\"; filename*=UTF-8''" + encoded;
+	}
+
+	/**
+	 * Wysyła treść widoku tekstowego lub binarnego - z automatycznym ETag (304,
+	 * gdy treść nie zmieniła się) i kompresją, jeśli są włączone (dla widoku
+	 * niezmiennego skompresowana treść jest zapamiętywana w widoku)
+	 * 
+	 * @param head     czy żądanie HEAD? (bez treści)
+	 * @param encoding wynegocjowane kodowanie, lub null
+	 */
+	private static void writeContent(AbstractView view, ControllerData data, boolean head, String encoding)
+			throws IOException {
+		HttpServletResponse response = data.getResponse();
+		boolean string = view.getViewType() == ViewType.STRING_CONTENT;
+		Object source = string ? view.getContent() : view.getContentBytes();
+
+		boolean etag = source != null && isAutoEtag(view, data);
+		// bez walidatora i kompresji (HEAD tekstu bez walidatora - bez kodowania treści)
+		if (source == null || (!etag && (encoding == null || (head && string)))) {
+			if (head) {
+				if (!string && source != null) {
+					response.setContentLength(view.getContentBytes().length);
+				}
+			} else if (string) {
+				PrintWriter writer = response.getWriter();
+				writer.print(view.getContent());
+			} else {
+				ServletOutputStream stream = response.getOutputStream();
+				stream.write(view.getContentBytes());
+			}
+			return;
+		}
+
+		byte[] bytes = string ? view.getContent().getBytes(response.getCharacterEncoding()) : view.getContentBytes();
+		writeBytes(view, source, bytes, data, head, encoding, etag);
+	}
+
+	/**
+	 * Wysyła treść o znanej długości - z ETag (304, gdy treść nie zmieniła się) i
+	 * kompresją
+	 * 
+	 * @param source   treść widoku (klucz skompresowanej treści widoku
+	 *                 niezmiennego)
+	 * @param bytes    treść do wysłania
+	 * @param head     czy żądanie HEAD? (bez treści i kompresji)
+	 * @param encoding wynegocjowane kodowanie, lub null
+	 * @param etag     czy wysłać automatyczny ETag?
+	 */
+	private static void writeBytes(AbstractView view, Object source, byte[] bytes, ControllerData data, boolean head,
+			String encoding, boolean etag) throws IOException {
+		WebAppConfig config = data.getDispatcher().getAppConfig();
+		HttpServletResponse response = data.getResponse();
+		if (encoding != null && (bytes.length < config.getCompressionMinSize()
+				|| response.containsHeader("Content-Encoding")
+				|| !Compression.isCompressible(response.getContentType(), config.getCompressionMimeTypes()))) {
+			encoding = null;// za mała treść lub typ bez kompresji
+		}
+
+		if (etag) {
+			String tag = ETags.of(bytes, config.isWeakEtag(), encoding);
+			response.setHeader("ETag", tag);
+			if (FileResponse.notModified(data.getRequest(), tag, -1)) {
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
+			}
+		}
+
+		if (encoding != null) {
+			response.setHeader("Content-Encoding", encoding);
+			if (head) {// HEAD - bez kompresji, długość skompresowanej treści nieznana
+				return;
+			}
+			bytes = view.isImmutable() ? view.getCompressionCache(source).get(encoding, bytes)
+					: Compression.compress(bytes, 0, bytes.length, encoding);
+		}
+		response.setContentLength(bytes.length);
+		if (!head) {
+			response.getOutputStream().write(bytes);
+		}
+	}
+
+	/**
+	 * Wysyła widok w odpowiedzi
+	 * 
+	 * @param view widok (lub null, gdy brak widoku)
+	 * @param data dane kontrolera
+	 */
+	static void writeView(AbstractView view, ControllerData data)
+			throws ServletException, IOException, WebAppException {
+
+		if (view == null) {
+			return;
+		}
+
+		ServletContext ctx = data.getDispatcher().getServletContext();
+
+		String contentType = view.getContentType();
+		if (contentType != null) {// typ odpowiedzi
+			data.getResponse().setContentType(contentType);
+		}
+		Integer httpCode = view.getCode();
+		if (httpCode != null) {// kod odpowiedzi HTTP
+			data.getResponse().setStatus(httpCode);
+		}
+
+		ViewType vType = view.getViewType();
+		boolean head = HttpMethodType.HEAD.name().equals(data.getRequest().getMethod());
+
+		WebAppConfig config = data.getDispatcher().getAppConfig();
+		String encoding = null;// kompresja odpowiedzi (gzip, deflate)
+		if (config.isCompression() && (vType == ViewType.JSP || vType == ViewType.STRING_CONTENT
+				|| vType == ViewType.BYTES_CONTENT || vType == ViewType.JSON)) {
+			data.getResponse().addHeader("Vary", "Accept-Encoding");
+			// również dla HEAD - te same nagłówki (ETag, Content-Encoding, Content-Length) co dla GET
+			encoding = Compression.negotiate(data.getRequest().getHeader("Accept-Encoding"));
+		}
+		if (vType == ViewType.FILE) {// plik - nagłówki również dla HEAD
+			if (contentType == null) {
+				String mime = ctx.getMimeType(view.getFile().getFileName().toString());
+				data.getResponse().setContentType(mime != null ? mime : "application/octet-stream");
+			}
+			if (view.getDownloadFileName() != null) {
+				data.getResponse().setHeader("Content-Disposition", contentDisposition(view.getDownloadFileName()));
+			}
+			FileResponse.send(view.getFile(), data.getRequest(), data.getResponse(), head);
+		} else if (vType == ViewType.STRING_CONTENT || vType == ViewType.BYTES_CONTENT) {// treść w pamięci
+			writeContent(view, data, head, encoding);
+		} else if (vType == ViewType.JSON) {// obiekt jako JSON (HEAD - nagłówki jak dla GET)
+			writeJson(view, data, head, encoding);
+		} else if (head) {
+			// HEAD - bez treści JSP i strumienia
+		} else if (vType == ViewType.JSP) { // odpowiedź JSP
+			String jspDir = config.getJspDir();
+			HttpServletResponse response = data.getResponse();
+			CompressingResponse compressing = null;
+			if (encoding != null) {// kompresja po przekroczeniu minimalnego rozmiaru
+				compressing = new CompressingResponse(response, encoding, config.getCompressionMinSize(),
+						config.getCompressionMimeTypes());
+				response = compressing;
+			}
+
+			JspResolver jsps = JspResolver.of(ctx);// pliki JSP (istnienie i dispatcher zapamiętane)
+			String prepend = view.getJspPrependFile();
+			String append = view.getJspAppendFile();
+
+			boolean written = false;
+			try {
+				if (prepend != null) {// header, prepend file (może być zapamiętany)
+					jsps.includeFragment(jspDir + prepend, view.getFragmentCacheKey(), view.getFragmentCacheTtl(),
+							data.getRequest(), response);
 				}
-				Integer httpCode = view.getCode();
-				if (httpCode != null) {// kod odpowiedzi HTTP
-					data.getResponse().setStatus(httpCode);
+
+				jsps.get(jspDir + view.getJspFile(), data.getRequest()).include(data.getRequest(), response);
+
+				if (append != null) {// append, footer file (może być zapamiętany)
+					jsps.includeFragment(jspDir + append, view.getFragmentCacheKey(), view.getFragmentCacheTtl(),
+							data.getRequest(), response);
 				}
 
-				ViewType vType = view.getViewType();
-				if (vType == ViewType.JSP) { // odpowiedź JSP
-					String jspDir = data.getDispatcher().getAppConfig().getJspDir();
-
-					String prepend = view.getJspPrependFile();
-					String append = view.getJspAppendFile();
-					String jsp = jspDir + view.getJspFile();
-
-					if (prepend != null) {// header, prepend file
-						prepend = jspDir + prepend;
-						if (ctx.getResource(prepend) == null) {
-							throw new WebAppException("JSP file not found!");
-						}
-						data.getRequest().getRequestDispatcher(prepend).include(data.getRequest(), data.getResponse());
-					}
-
-					if (ctx.getResource(jsp) == null) {
-						throw new WebAppException("JSP file not found!");
-					}
-					data.getRequest().getRequestDispatcher(jsp).include(data.getRequest(), data.getResponse());
-
-					if (append != null) {// append, footer file
-						append = jspDir + append;
-						if (ctx.getResource(append) == null) {
-							throw new WebAppException("JSP file not found!");
-						}
-						data.getRequest().getRequestDispatcher(append).include(data.getRequest(), data.getResponse());
-					}
-
-				} else if (vType == ViewType.STRING_CONTENT) {// odpowiedź tekstowa (string)
-					PrintWriter writer = data.getResponse().getWriter();
-					writer.print(view.getContent());
-				} else if (vType == ViewType.BYTES_CONTENT) {// odpowiedź jako tablica bajtów
-					ServletOutputStream stream = data.getResponse().getOutputStream();
-					stream.write(view.getContentBytes());
+				if (compressing != null) {
+					compressing.finish();
+				}
+				written = true;
+			} finally {
+				if (compressing != null && !written) {// błąd - zwolnienie kompresji
+					compressing.abort();
 				}
 			}
 
-		} finally {
-			if (controller != null) {
-				controller.endJob();// end job
+		} else if (vType == ViewType.STREAM) {// odpowiedź zapisywana strumieniowo
+			int interval = view.getFlushInterval() != null ? view.getFlushInterval()
+					: data.getDispatcher().getAppConfig().getStreamFlushInterval();
+
+			if (view.getStreamWriter() != null) {
+				FlushingStreams.Output out = new FlushingStreams.Output(data.getResponse().getOutputStream(),
+						interval);
+				view.getStreamWriter().write(out);
+				out.flush();
+			} else if (view.getTextStreamWriter() != null) {
+				FlushingStreams.Text out = new FlushingStreams.Text(data.getResponse().getWriter(), interval);
+				view.getTextStreamWriter().write(out);
+				out.flush();
 			}
 		}
 	}
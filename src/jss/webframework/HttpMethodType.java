@@ -6,5 +6,5 @@ package jss.webframework;
  * @author lukas
  */
 public enum HttpMethodType {
-	GET, POST, PUT, DELETE;
+	GET, POST, PUT, DELETE, HEAD, OPTIONS, PATCH;
 }
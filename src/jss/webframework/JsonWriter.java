@@ -0,0 +1,444 @@
+package jss.webframework;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming JSON writer - values are encoded directly to UTF-8 bytes. Output
+ * is kept in memory up to buffer limit (so length of small output is known),
+ * larger output is written to stream opened on overflow.
+ * <p>
+ * Supported values: null, strings, numbers, booleans, characters, enums, maps
+ * (keys as strings), iterables, arrays and objects. Objects are written with
+ * their fields (static, transient and synthetic fields are skipped) - field
+ * accessors are created once for each class. Other JDK classes (e.g. dates) are
+ * written as strings.
+ *
+ * @author lukas
+ */
+final class JsonWriter {
+	private static final int MAX_DEPTH = 64;
+	private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+	private static final ClassValue<Property[]> PROPERTIES = new ClassValue<Property[]>() {
+		@Override
+		protected Property[] computeValue(Class<?> type) {
+			return Property.of(type);
+		}
+	};
+
+	/**
+	 * Stream for output larger than buffer limit
+	 */
+	interface Output {
+		/**
+		 * @return output stream (closed after writing)
+		 */
+		OutputStream open() throws IOException;
+	}
+
+	private final int limit;
+	private final Output output;
+	private OutputStream out;// null - output is buffered
+	private byte[] buf;
+	private int pos = 0;
+	private int depth = 0;
+
+	/**
+	 * @param limit  maximum size of buffered output
+	 * @param output stream for larger output
+	 */
+	JsonWriter(int limit, Output output) {
+		this.limit = limit;
+		this.output = output;
+		this.buf = new byte[Math.max(64, Math.min(limit, 4096))];
+	}
+
+	/**
+	 * Is output written to stream? (larger than buffer limit)
+	 */
+	boolean isStreamed() {
+		return out != null;
+	}
+
+	/**
+	 * Buffered output (when it is not streamed)
+	 */
+	byte[] toByteArray() {
+		return Arrays.copyOf(buf, pos);
+	}
+
+	/**
+	 * Writes rest of output to stream, and closes it (when output is streamed)
+	 */
+	void close() throws IOException {
+		if (out != null) {
+			out.write(buf, 0, pos);
+			pos = 0;
+			out.close();
+		}
+	}
+
+	/**
+	 * Releases stream after error (compression is ended, rest of output is not
+	 * written)
+	 */
+	void abort() {
+		if (out != null) {
+			Compression.abort(out);
+		}
+	}
+
+	/**
+	 * Writes value
+	 */
+	void value(Object value) throws IOException {
+		if (value == null) {
+			ascii("null");
+		} else if (value instanceof CharSequence) {
+			string((CharSequence) value);
+		} else if (value instanceof Number) {
+			number((Number) value);
+		} else if (value instanceof Boolean) {
+			ascii(value.toString());
+		} else if (value instanceof Character || value instanceof Enum) {
+			string(value instanceof Enum ? ((Enum<?>) value).name() : value.toString());
+		} else if (value instanceof Map) {
+			map((Map<?, ?>) value);
+		} else if (value instanceof Iterable) {
+			iterable((Iterable<?>) value);
+		} else if (value.getClass().isArray()) {
+			array(value);
+		} else if (isJdkClass(value.getClass())) {// e.g. dates
+			string(value.toString());
+		} else {
+			object(value);
+		}
+	}
+
+	private void map(Map<?, ?> map) throws IOException {
+		enter();
+		put('{');
+		boolean first = true;
+		for (Map.Entry<?, ?> e : map.entrySet()) {
+			if (!first) {
+				put(',');
+			}
+			first = false;
+			string(String.valueOf(e.getKey()));
+			put(':');
+			value(e.getValue());
+		}
+		put('}');
+		depth--;
+	}
+
+	private void iterable(Iterable<?> iterable) throws IOException {
+		enter();
+		put('[');
+		boolean first = true;
+		for (Object o : iterable) {
+			if (!first) {
+				put(',');
+			}
+			first = false;
+			value(o);
+		}
+		put(']');
+		depth--;
+	}
+
+	private void array(Object array) throws IOException {
+		if (array instanceof char[]) {
+			string(new String((char[]) array));
+			return;
+		}
+
+		enter();
+		put('[');
+		int length = Array.getLength(array);
+		for (int i = 0; i < length; i++) {
+			if (i > 0) {
+				put(',');
+			}
+			if (array instanceof Object[]) {
+				value(((Object[]) array)[i]);
+			} else if (array instanceof int[]) {
+				ascii(Integer.toString(((int[]) array)[i]));
+			} else if (array instanceof long[]) {
+				ascii(Long.toString(((long[]) array)[i]));
+			} else if (array instanceof double[]) {
+				decimal(((double[]) array)[i]);
+			} else if (array instanceof boolean[]) {
+				ascii(((boolean[]) array)[i] ? "true" : "false");
+			} else {// byte, short, float
+				number((Number) Array.get(array, i));
+			}
+		}
+		put(']');
+		depth--;
+	}
+
+	private void object(Object value) throws IOException {
+		enter();
+		put('{');
+		boolean first = true;
+		for (Property p : PROPERTIES.get(value.getClass())) {
+			if (!first) {
+				put(',');
+			}
+			first = false;
+			bytes(p.name);
+			try {
+				p.write(this, value);
+			} catch (IOException | RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		put('}');
+		depth--;
+	}
+
+	private void number(Number n) throws IOException {
+		if (n instanceof Double) {
+			decimal(n.doubleValue());
+		} else if (n instanceof Float) {// without digits of double conversion
+			float f = n.floatValue();
+			ascii(Float.isNaN(f) || Float.isInfinite(f) ? "null" : Float.toString(f));
+		} else {
+			ascii(n.toString());
+		}
+	}
+
+	private void decimal(double d) throws IOException {
+		if (Double.isNaN(d) || Double.isInfinite(d)) {// not allowed in JSON
+			ascii("null");
+		} else if (d == (long) d && Math.abs(d) < 1e15) {
+			ascii(Long.toString((long) d));
+		} else {
+			ascii(Double.toString(d));
+		}
+	}
+
+	private void string(CharSequence s) throws IOException {
+		put('"');
+		int length = s.length();
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				if (c >= 0x20 && c != '"' && c != '\\') {
+					if (pos == buf.length) {
+						ensure(1);
+					}
+					buf[pos++] = (byte) c;
+				} else {
+					escape(c);
+				}
+			} else if (c < 0x800) {
+				ensure(2);
+				buf[pos++] = (byte) (0xC0 | (c >> 6));
+				buf[pos++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, s.charAt(++i));
+				ensure(4);
+				buf[pos++] = (byte) (0xF0 | (cp >> 18));
+				buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+				buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+				buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+			} else if (Character.isSurrogate(c)) {// lone surrogate - escaped, output stays valid UTF-8
+				escape(c);
+			} else {
+				ensure(3);
+				buf[pos++] = (byte) (0xE0 | (c >> 12));
+				buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				buf[pos++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		put('"');
+	}
+
+	private void escape(char c) throws IOException {
+		ensure(6);
+		buf[pos++] = '\\';
+		switch (c) {
+		case '"':
+			buf[pos++] = '"';
+			break;
+		case '\\':
+			buf[pos++] = '\\';
+			break;
+		case '\n':
+			buf[pos++] = 'n';
+			break;
+		case '\r':
+			buf[pos++] = 'r';
+			break;
+		case '\t':
+			buf[pos++] = 't';
+			break;
+		case '\b':
+			buf[pos++] = 'b';
+			break;
+		case '\f':
+			buf[pos++] = 'f';
+			break;
+		default:
+			buf[pos++] = 'u';
+			buf[pos++] = HEX[(c >> 12) & 0xF];
+			buf[pos++] = HEX[(c >> 8) & 0xF];
+			buf[pos++] = HEX[(c >> 4) & 0xF];
+			buf[pos++] = HEX[c & 0xF];
+		}
+	}
+
+	private void ascii(String s) throws IOException {
+		int length = s.length();
+		ensure(length);
+		for (int i = 0; i < length; i++) {
+			buf[pos++] = (byte) s.charAt(i);
+		}
+	}
+
+	private void bytes(byte[] b) throws IOException {
+		ensure(b.length);
+		System.arraycopy(b, 0, buf, pos, b.length);
+		pos += b.length;
+	}
+
+	private void put(int b) throws IOException {
+		if (pos == buf.length) {
+			ensure(1);
+		}
+		buf[pos++] = (byte) b;
+	}
+
+	/**
+	 * Makes space for n bytes - grows buffer up to limit, then writes buffer to
+	 * stream
+	 */
+	private void ensure(int n) throws IOException {
+		if (pos + n <= buf.length) {
+			return;
+		}
+		if (out == null) {
+			if (pos + n <= limit) {
+				buf = Arrays.copyOf(buf, Math.min(limit, Math.max(buf.length * 2, pos + n)));
+				return;
+			}
+			out = output.open();// larger than limit - streamed
+		}
+		out.write(buf, 0, pos);
+		pos = 0;
+		if (n > buf.length) {
+			buf = new byte[n];
+		}
+	}
+
+	private void enter() {
+		if (++depth > MAX_DEPTH) {
+			throw new IllegalArgumentException("JSON nesting is too deep (cyclic references?)");
+		}
+	}
+
+	private static boolean isJdkClass(Class<?> type) {
+		String name = type.getName();
+		return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.");
+	}
+
+	/**
+	 * Field of object, with accessor adapted to its type
+	 */
+	private static abstract class Property {
+		private static final MethodType OBJECT = MethodType.methodType(Object.class, Object.class);
+		private static final MethodType LONG = MethodType.methodType(long.class, Object.class);
+		private static final MethodType DOUBLE = MethodType.methodType(double.class, Object.class);
+		private static final MethodType BOOLEAN = MethodType.methodType(boolean.class, Object.class);
+
+		final byte[] name;// "name":
+		final MethodHandle getter;
+
+		Property(Field field, MethodHandle getter, MethodType type) {
+			this.name = ("\"" + field.getName() + "\":").getBytes(StandardCharsets.UTF_8);
+			this.getter = getter.asType(type);
+		}
+
+		abstract void write(JsonWriter writer, Object object) throws Throwable;
+
+		/**
+		 * Properties of class (fields of superclasses first)
+		 */
+		static Property[] of(Class<?> type) {
+			Deque<Class<?>> hierarchy = new ArrayDeque<>();
+			for (Class<?> t = type; t != null && t != Object.class; t = t.getSuperclass()) {
+				hierarchy.push(t);
+			}
+
+			try {
+				MethodHandles.Lookup lookup = MethodHandles.lookup();
+				List<Property> list = new ArrayList<>();
+				for (Class<?> t : hierarchy) {
+					for (Field f : t.getDeclaredFields()) {
+						int mod = f.getModifiers();
+						if (Modifier.isStatic(mod) || Modifier.isTransient(mod) || f.isSynthetic()) {
+							continue;
+						}
+						f.setAccessible(true);
+						list.add(of(f, lookup.unreflectGetter(f)));
+					}
+				}
+				return list.toArray(new Property[list.size()]);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				throw new IllegalArgumentException(
+						"Cannot write class " + type.getName() + " as JSON: " + e.getMessage(), e);
+			}
+		}
+
+		private static Property of(Field field, MethodHandle getter) {
+			Class<?> type = field.getType();
+			if (type == int.class || type == long.class || type == short.class || type == byte.class) {
+				return new Property(field, getter, LONG) {
+					@Override
+					void write(JsonWriter writer, Object object) throws Throwable {
+						writer.ascii(Long.toString((long) this.getter.invokeExact(object)));
+					}
+				};
+			} else if (type == double.class) {
+				return new Property(field, getter, DOUBLE) {
+					@Override
+					void write(JsonWriter writer, Object object) throws Throwable {
+						writer.decimal((double) this.getter.invokeExact(object));
+					}
+				};
+			} else if (type == boolean.class) {
+				return new Property(field, getter, BOOLEAN) {
+					@Override
+					void write(JsonWriter writer, Object object) throws Throwable {
+						writer.ascii((boolean) this.getter.invokeExact(object) ? "true" : "false");
+					}
+				};
+			}
+			return new Property(field, getter, OBJECT) {// objects, and char and float (boxed)
+				@Override
+				void write(JsonWriter writer, Object object) throws Throwable {
+					writer.value((Object) this.getter.invokeExact(object));
+				}
+			};
+		}
+	}
+
+}
@@ -0,0 +1,25 @@
+package jss.webframework;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Pliki JSP używane przez widoki kontrolera (względem katalogu JSP, również
+ * pliki prepend i append). Przy włączonym sprawdzaniu JSP
+ * ({@link WebAppConfig#isValidateJsp()}) brak pliku jest błędem przy starcie
+ * aplikacji, a nie przy obsłudze zapytania.
+ *
+ * @author lukas
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface JspFiles {
+
+	/**
+	 * Pliki JSP, np. {@code index.jsp}
+	 */
+	String[] value();
+
+}
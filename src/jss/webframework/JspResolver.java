@@ -0,0 +1,116 @@
+package jss.webframework;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Resolves JSP files of views. Existence of file and its request dispatcher are
+ * cached (by full path), so resources are not looked up on every request. In
+ * development mode cache is not used - JSP files may be added or removed
+ * without restart.
+ *
+ * @author lukas
+ */
+final class JspResolver {
+	private final ServletContext ctx;
+	private final WebAppConfig config;
+	private final ConcurrentHashMap<String, Optional<RequestDispatcher>> cache = new ConcurrentHashMap<>();
+	private final FragmentCache fragments = new FragmentCache();
+
+	JspResolver(ServletContext ctx, WebAppConfig config) {
+		this.ctx = ctx;
+		this.config = config;
+	}
+
+	/**
+	 * Resolver of application
+	 */
+	static JspResolver of(ServletContext ctx) {
+		return (JspResolver) ctx.getAttribute(WebFrameworkMainInitializer.CTX_JSP_ATTR);
+	}
+
+	/**
+	 * Dispatcher of JSP file
+	 *
+	 * @param path    full path of JSP file (with JSP directory)
+	 * @param request current request (for relative paths, which are not cached)
+	 * @return dispatcher
+	 * @throws WebAppException file not found
+	 */
+	RequestDispatcher get(String path, HttpServletRequest request) throws WebAppException {
+		if (config.isDevMode() || !path.startsWith("/")) {// without cache
+			if (!exists(path)) {
+				throw new WebAppException("JSP file not found!");
+			}
+			return request.getRequestDispatcher(path);
+		}
+
+		Optional<RequestDispatcher> jsp = cache.get(path);
+		if (jsp == null) {// missing files are cached too
+			jsp = Optional.ofNullable(exists(path) ? ctx.getRequestDispatcher(path) : null);
+			cache.putIfAbsent(path, jsp);
+		}
+		return jsp.orElseThrow(() -> new WebAppException("JSP file not found!"));
+	}
+
+	/**
+	 * Includes fragment (prepend or append file of view) - from fragment cache,
+	 * when view declares cache key (except development mode)
+	 *
+	 * @param path     full path of JSP file (with JSP directory)
+	 * @param key      fragment cache key, or null
+	 * @param ttl      time to live of cached fragment, in seconds
+	 * @param request  request
+	 * @param response response
+	 * @throws WebAppException file not found
+	 */
+	void includeFragment(String path, String key, long ttl, HttpServletRequest request,
+			HttpServletResponse response) throws WebAppException, ServletException, IOException {
+		RequestDispatcher jsp = get(path, request);
+		if (key == null || config.isDevMode()) {
+			jsp.include(request, response);
+		} else {
+			fragments.include(jsp, path, key, ttl, request, response);
+		}
+	}
+
+	/**
+	 * Checks JSP files declared by controller, and caches them
+	 *
+	 * @param controller controller class
+	 * @throws WebAppException file not found
+	 */
+	void validate(Class<?> controller) throws WebAppException {
+		JspFiles files = controller.getAnnotation(JspFiles.class);
+		if (files == null) {
+			return;
+		}
+		for (String file : files.value()) {
+			String path = config.getJspDir() + file;
+			if (!exists(path)) {
+				throw new WebAppException(
+						"JSP file not found: " + path + " (controller " + controller.getName() + ")");
+			}
+			if (!config.isDevMode() && path.startsWith("/")) {
+				cache.putIfAbsent(path, Optional.ofNullable(ctx.getRequestDispatcher(path)));
+			}
+		}
+	}
+
+	private boolean exists(String path) {
+		try {
+			return ctx.getResource(path) != null;
+		} catch (MalformedURLException e) {
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,112 @@
+package jss.webframework;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Request parameters parsed on first access. Single parameter of not multipart
+ * request (decoded by container) is read alone - all parameters (and multipart
+ * body) are parsed only when needed, so request body is not read when
+ * controller does not use parameters.
+ * 
+ * @author lukas
+ */
+final class LazyRequestParams extends AbstractMap<String, RequestParam> {
+	private final HttpServletRequest request;
+	private final Loader loader;
+	private final boolean singleLookup;// can single parameter be read from container?
+	private Map<String, RequestParam> single;// parameters read alone
+	private Map<String, RequestParam> all;// all parameters, or null when not parsed yet
+
+	/**
+	 * @param request     request
+	 * @param loader      parser of all parameters
+	 * @param formDecoder are parameters decoded by framework decoder (not by
+	 *                    container)?
+	 */
+	LazyRequestParams(HttpServletRequest request, Loader loader, boolean formDecoder) {
+		this.request = request;
+		this.loader = loader;
+		this.singleLookup = !formDecoder && !AbstractServlet.isMultipart(request);
+	}
+
+	@Override
+	public RequestParam get(Object key) {
+		if (all != null || !singleLookup || !(key instanceof String)) {
+			return all().get(key);
+		}
+
+		String name = (String) key;
+		RequestParam param = single != null ? single.get(name) : null;
+		if (param == null) {
+			String[] values = request.getParameterValues(name);
+			if (values == null) {
+				return null;
+			}
+
+			param = new RequestParam(name, values);
+			if (single == null) {
+				single = new HashMap<>(4);
+			}
+			single.put(name, param);
+		}
+
+		return param;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public RequestParam put(String key, RequestParam value) {
+		return all().put(key, value);
+	}
+
+	@Override
+	public RequestParam remove(Object key) {
+		return all().remove(key);
+	}
+
+	@Override
+	public Set<Entry<String, RequestParam>> entrySet() {
+		return all().entrySet();
+	}
+
+	/**
+	 * All parameters - parsed on first call
+	 */
+	private Map<String, RequestParam> all() {
+		if (all == null) {
+			try {
+				all = loader.load();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} catch (ServletException e) {
+				throw new IllegalStateException("Cannot read request parameters!", e);
+			}
+
+			if (single != null) {// keep already returned objects
+				all.putAll(single);
+				single = null;
+			}
+		}
+		return all;
+	}
+
+	/**
+	 * Parser of all request parameters
+	 */
+	interface Loader {
+		Map<String, RequestParam> load() throws IOException, ServletException;
+	}
+
+}
@@ -0,0 +1,299 @@
+package jss.webframework;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Streaming parser of multipart/form-data request. Parts are returned in order
+ * of arrival, content of part is read directly from request stream - without
+ * buffering whole request, or temporary files. Parts not read by controller are
+ * skipped.
+ * <p>
+ * Iterator methods throw {@link UncheckedIOException} on read errors.
+ *
+ * @author lukas
+ */
+public class MultipartIterator implements Iterator<MultipartPart> {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_HEADERS_SIZE = 16 * 1024;
+
+	private final InputStream in;
+	private final byte[] delimiter;// CRLF--boundary
+	private final byte[] buf = new byte[BUFFER_SIZE];
+	private int head = 0;// start of unread data in buffer
+	private int tail = 0;// end of data in buffer
+	private boolean eof = false;// end of request stream
+	private boolean finished = false;// closing boundary found
+	private int limit = -1;// end of part data in buffer (delimiter, or its possible start), -1 - not searched
+	private boolean delimiterFound = false;// limit is position of delimiter
+	private PartInputStream current;
+	private MultipartPart next;
+
+	/**
+	 * @param in       request stream
+	 * @param boundary boundary from content type
+	 */
+	public MultipartIterator(InputStream in, String boundary) {
+		this.in = in;
+		this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+
+		// first boundary is not preceded by CRLF - add it, preamble is read as part
+		buf[tail++] = '\r';
+		buf[tail++] = '\n';
+		current = new PartInputStream();
+	}
+
+	/**
+	 * Creates iterator for request with given content type
+	 *
+	 * @param in          request stream
+	 * @param contentType content type with boundary
+	 * @return iterator
+	 * @throws IOException no boundary in content type
+	 */
+	public static MultipartIterator of(InputStream in, String contentType) throws IOException {
+		String boundary = contentType != null ? MultipartPart.headerParam(contentType, "boundary") : null;
+		if (boundary == null || boundary.isEmpty()) {
+			throw new IOException("No multipart boundary!");
+		}
+		return new MultipartIterator(in, boundary);
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next != null) {
+			return true;
+		}
+		if (finished) {
+			return false;
+		}
+
+		try {
+			// skip rest of current part
+			current.drain();
+
+			// after delimiter: "--" (end) or CRLF (next part)
+			if (!ensure(2)) {
+				throw new IOException("Unexpected end of multipart stream!");
+			}
+			if (buf[head] == '-' && buf[head + 1] == '-') {
+				finished = true;
+				return false;
+			}
+
+			readLine();// rest of boundary line
+			Map<String, String> headers = readHeaders();
+			current = new PartInputStream();
+			next = new MultipartPart(headers, current);
+			return true;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public MultipartPart next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		MultipartPart part = next;
+		next = null;
+		return part;
+	}
+
+	/**
+	 * Reads headers of part, to empty line
+	 */
+	private Map<String, String> readHeaders() throws IOException {
+		Map<String, String> headers = new HashMap<>(4);
+		int size = 0;
+		String line;
+		while (!(line = readLine()).isEmpty()) {
+			size += line.length();
+			if (size > MAX_HEADERS_SIZE) {
+				throw new IOException("Multipart headers too large!");
+			}
+
+			int colon = line.indexOf(':');
+			if (colon > 0) {
+				headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+			}
+		}
+		return headers;
+	}
+
+	/**
+	 * Reads line (to CRLF) from buffer
+	 */
+	private String readLine() throws IOException {
+		int from = head;
+		while (true) {
+			for (int i = from; i + 1 < tail; i++) {
+				if (buf[i] == '\r' && buf[i + 1] == '\n') {
+					String line = new String(buf, head, i - head, StandardCharsets.UTF_8);
+					head = i + 2;
+					return line;
+				}
+			}
+
+			if (tail - head >= MAX_HEADERS_SIZE) {
+				throw new IOException("Multipart header line too long!");
+			}
+			from = Math.max(head, tail - 1);
+			int shift = head;
+			if (!fill()) {
+				throw new IOException("Unexpected end of multipart stream!");
+			}
+			from -= shift;
+		}
+	}
+
+	/**
+	 * Ensures, that buffer contains at least n bytes
+	 *
+	 * @return false, when end of stream
+	 */
+	private boolean ensure(int n) throws IOException {
+		while (tail - head < n) {
+			if (!fill()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Moves unread data to start of buffer, and reads more data (end of part data
+	 * is searched again)
+	 *
+	 * @return false, when end of stream (no data read)
+	 */
+	private boolean fill() throws IOException {
+		if (eof) {
+			return false;
+		}
+		limit = -1;
+
+		if (head > 0) {
+			System.arraycopy(buf, head, buf, 0, tail - head);
+			tail -= head;
+			head = 0;
+		}
+
+		int n = in.read(buf, tail, buf.length - tail);
+		if (n < 0) {
+			eof = true;
+			return false;
+		}
+		tail += n;
+		return true;
+	}
+
+	/**
+	 * Index of delimiter in buffer, or -1
+	 */
+	private int indexOfDelimiter() {
+		final byte first = delimiter[0];
+		final int last = tail - delimiter.length;
+		outer: for (int i = head; i <= last; i++) {
+			if (buf[i] != first) {
+				continue;
+			}
+			for (int j = 1; j < delimiter.length; j++) {
+				if (buf[i + j] != delimiter[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Content of single part - ends before delimiter
+	 */
+	private class PartInputStream extends InputStream {
+		private boolean done = false;
+
+		@Override
+		public int read() throws IOException {
+			if (done || fillPart() < 0) {
+				return -1;
+			}
+			return buf[head++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (done) {
+				return -1;
+			}
+			if (len == 0) {
+				return 0;
+			}
+
+			int available = fillPart();
+			if (available < 0) {
+				return -1;
+			}
+			int n = Math.min(available, len);
+			System.arraycopy(buf, head, b, off, n);
+			head += n;
+			return n;
+		}
+
+		@Override
+		public int available() {
+			return !done && limit > head ? limit - head : 0;
+		}
+
+		/**
+		 * Skips rest of part, without storing it
+		 */
+		private void drain() throws IOException {
+			while (!done) {
+				int n = fillPart();
+				if (n > 0) {
+					head += n;
+				}
+			}
+		}
+
+		/**
+		 * Number of part bytes in buffer, reads more data when needed. Buffer is
+		 * searched for delimiter once after each fill.
+		 *
+		 * @return number of bytes, or -1 when end of part (delimiter is skipped)
+		 */
+		private int fillPart() throws IOException {
+			while (true) {
+				if (limit < 0) {
+					int idx = indexOfDelimiter();
+					delimiterFound = idx > -1;
+					// without delimiter - data which cannot be start of delimiter
+					limit = delimiterFound ? idx : Math.max(head, tail - (delimiter.length - 1));
+				}
+
+				if (head < limit) {
+					return limit - head;
+				} else if (delimiterFound) {// end of part
+					head += delimiter.length;
+					limit = -1;
+					done = true;
+					return -1;
+				}
+
+				if (!fill()) {
+					throw new IOException("Unexpected end of multipart stream!");
+				}
+			}
+		}
+	}
+
+}
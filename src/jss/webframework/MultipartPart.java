@@ -0,0 +1,156 @@
+package jss.webframework;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Part of multipart/form-data request, read in streaming mode (see
+ * {@link MultipartIterator}). Content is available only until next part is
+ * requested.
+ *
+ * @author lukas
+ */
+public class MultipartPart {
+	private final Map<String, String> headers;// lower case names
+	private final String name;
+	private final String fileName;
+	private final InputStream input;
+
+	MultipartPart(Map<String, String> headers, InputStream input) {
+		this.headers = headers;
+		this.input = input;
+
+		String disposition = headers.get("content-disposition");
+		this.name = disposition != null ? headerParam(disposition, "name") : null;
+		this.fileName = disposition != null ? headerParam(disposition, "filename") : null;
+	}
+
+	/**
+	 * Name of form field
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Name of uploaded file, or null when part is not a file
+	 */
+	public String getSubmittedFileName() {
+		return fileName;
+	}
+
+	/**
+	 * Is part a file?
+	 */
+	public boolean isFile() {
+		return fileName != null;
+	}
+
+	/**
+	 * Content type of part, or null
+	 */
+	public String getContentType() {
+		return headers.get("content-type");
+	}
+
+	/**
+	 * Header of part
+	 *
+	 * @param name header name (case insensitive)
+	 * @return header value, or null
+	 */
+	public String getHeader(String name) {
+		return headers.get(name.toLowerCase());
+	}
+
+	/**
+	 * Headers of part (lower case names)
+	 */
+	Map<String, String> getHeaders() {
+		return headers;
+	}
+
+	/**
+	 * Content of part, read directly from request. Unread content is skipped when
+	 * next part is requested.
+	 */
+	public InputStream getInputStream() {
+		return input;
+	}
+
+	/**
+	 * Content of part as text (UTF-8)
+	 */
+	public String getString() throws IOException {
+		return getString(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Content of part as text
+	 *
+	 * @param charset charset of text
+	 */
+	public String getString(Charset charset) throws IOException {
+		return new String(input.readAllBytes(), charset);
+	}
+
+	/**
+	 * Gets parameter of header, e.g. name from
+	 * {@code form-data; name="field"; filename="a.txt"}
+	 *
+	 * @return value of parameter, or null
+	 */
+	static String headerParam(String header, String param) {
+		int pos = 0;
+		while (pos < header.length()) {
+			int semicolon = header.indexOf(';', pos);
+			if (semicolon < 0) {
+				return null;
+			}
+
+			// find param name
+			int start = semicolon + 1;
+			while (start < header.length() && header.charAt(start) == ' ') {
+				start++;
+			}
+			int eq = header.indexOf('=', start);
+			if (eq < 0) {
+				return null;
+			}
+
+			String key = header.substring(start, eq).trim();
+			int valueStart = eq + 1;
+			int valueEnd;
+			String value;
+			if (valueStart < header.length() && header.charAt(valueStart) == '"') {// quoted
+				valueEnd = header.indexOf('"', valueStart + 1);
+				if (valueEnd < 0) {
+					valueEnd = header.length();
+				}
+				value = header.substring(valueStart + 1, valueEnd);
+				valueEnd++;
+			} else {
+				valueEnd = header.indexOf(';', valueStart);
+				if (valueEnd < 0) {
+					valueEnd = header.length();
+				}
+				value = header.substring(valueStart, valueEnd).trim();
+			}
+
+			if (key.equalsIgnoreCase(param)) {
+				return value;
+			}
+			pos = valueEnd;
+		}
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return "MultipartPart [name=" + name + ", fileName=" + fileName + ", headers=" + headers + "]";
+	}
+
+}
@@ -0,0 +1,172 @@
+package jss.webframework;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parsing of parameter values to primitive types - without boxing, and without
+ * exceptions on invalid values (default value is returned).
+ *
+ * @author lukas
+ */
+final class ParamParser {
+
+	/**
+	 * Enum constants by name, for each enum class
+	 */
+	private static final ClassValue<Map<String, Enum<?>>> ENUMS = new ClassValue<Map<String, Enum<?>>>() {
+		@Override
+		protected Map<String, Enum<?>> computeValue(Class<?> type) {
+			Object[] constants = type.getEnumConstants();
+			Map<String, Enum<?>> map = new HashMap<>(constants.length * 2);
+			for (Object c : constants) {
+				map.put(((Enum<?>) c).name(), (Enum<?>) c);
+			}
+			return map;
+		}
+	};
+
+	private ParamParser() {
+	}
+
+	/**
+	 * @param value value, may be null
+	 * @param def   default value
+	 * @return parsed value, or default when value is null, not a number or out of
+	 *         int range
+	 */
+	static int parseInt(String value, int def) {
+		return isInt(value) ? (int) toLong(value) : def;
+	}
+
+	/**
+	 * @param value value, may be null
+	 * @param def   default value
+	 * @return parsed value, or default when value is null, not a number or out of
+	 *         long range
+	 */
+	static long parseLong(String value, long def) {
+		return isLong(value) ? toLong(value) : def;
+	}
+
+	/**
+	 * @return true, when value is decimal number in int range
+	 */
+	static boolean isInt(String value) {
+		return isNumber(value, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @return true, when value is decimal number in long range
+	 */
+	static boolean isLong(String value) {
+		return isNumber(value, Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Checks decimal number with optional sign, in given range
+	 */
+	private static boolean isNumber(String value, long min, long max) {
+		if (value == null || value.isEmpty()) {
+			return false;
+		}
+
+		int i = 0;
+		boolean negative = false;
+		char first = value.charAt(0);
+		if (first == '-' || first == '+') {
+			if (value.length() == 1) {
+				return false;
+			}
+			negative = first == '-';
+			i++;
+		}
+
+		// accumulate negatively - range of negative numbers is larger
+		long limit = negative ? min : -max;
+		long multmin = limit / 10;
+		long result = 0;
+		for (; i < value.length(); i++) {
+			int digit = value.charAt(i) - '0';
+			if (digit < 0 || digit > 9 || result < multmin) {
+				return false;
+			}
+			result *= 10;
+			if (result < limit + digit) {
+				return false;
+			}
+			result -= digit;
+		}
+		return true;
+	}
+
+	/**
+	 * Converts checked number (see {@link #isNumber(String, long, long)})
+	 */
+	private static long toLong(String value) {
+		int i = 0;
+		char first = value.charAt(0);
+		if (first == '-' || first == '+') {
+			i++;
+		}
+
+		long result = 0;
+		for (; i < value.length(); i++) {
+			result = result * 10 - (value.charAt(i) - '0');
+		}
+		return first == '-' ? result : -result;
+	}
+
+	/**
+	 * @param value value, may be null
+	 * @param def   default value
+	 * @return parsed value, or default when value is null or not a number
+	 */
+	static double parseDouble(String value, double def) {
+		if (value == null || value.isEmpty()) {
+			return def;
+		}
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			return def;
+		}
+	}
+
+	/**
+	 * Accepts true/on/yes/1 and false/off/no/0 (case insensitive)
+	 *
+	 * @param value value, may be null
+	 * @param def   default value
+	 * @return parsed value, or default when value is null or unknown
+	 */
+	static boolean parseBoolean(String value, boolean def) {
+		if (value == null) {
+			return def;
+		}
+		if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("on") || value.equalsIgnoreCase("yes")
+				|| value.equals("1")) {
+			return true;
+		}
+		if (value.equalsIgnoreCase("false") || value.equalsIgnoreCase("off") || value.equalsIgnoreCase("no")
+				|| value.equals("0")) {
+			return false;
+		}
+		return def;
+	}
+
+	/**
+	 * @param value value (name of constant), may be null
+	 * @param type  enum class
+	 * @param def   default value
+	 * @return enum constant, or default when value is null or unknown
+	 */
+	static <E extends Enum<E>> E parseEnum(String value, Class<E> type, E def) {
+		if (value == null) {
+			return def;
+		}
+		Enum<?> e = ENUMS.get(type).get(value);
+		return e != null ? type.cast(e) : def;
+	}
+
+}
@@ -31,4 +31,89 @@ public interface ParameterLoader {
 	 */
 	public String getSingleParam(String name);
 
+	/**
+	 * Zwraca pojedyńczy parametr jako int (bez tworzenia obiektów)
+	 * 
+	 * @param name nazwa parametru
+	 * @param def  wartość domyślna
+	 * @return wartość, lub wartość domyślna gdy brak parametru lub nie jest liczbą
+	 */
+	public default int getInt(String name, int def) {
+		return ParamParser.parseInt(getSingleParam(name), def);
+	}
+
+	/**
+	 * Zwraca pojedyńczy parametr jako long (bez tworzenia obiektów)
+	 * 
+	 * @param name nazwa parametru
+	 * @param def  wartość domyślna
+	 * @return wartość, lub wartość domyślna gdy brak parametru lub nie jest liczbą
+	 */
+	public default long getLong(String name, long def) {
+		return ParamParser.parseLong(getSingleParam(name), def);
+	}
+
+	/**
+	 * Zwraca pojedyńczy parametr jako boolean (true/on/yes/1, false/off/no/0)
+	 * 
+	 * @param name nazwa parametru
+	 * @param def  wartość domyślna
+	 * @return wartość, lub wartość domyślna gdy brak parametru lub jest
+	 *         nieprawidłowy
+	 */
+	public default boolean getBoolean(String name, boolean def) {
+		return ParamParser.parseBoolean(getSingleParam(name), def);
+	}
+
+	/**
+	 * Zwraca pojedyńczy parametr jako stałą typu wyliczeniowego (po nazwie stałej)
+	 * 
+	 * @param name nazwa parametru
+	 * @param type typ wyliczeniowy
+	 * @param def  wartość domyślna
+	 * @return wartość, lub wartość domyślna gdy brak parametru lub stałej
+	 */
+	public default <E extends Enum<E>> E getEnum(String name, Class<E> type, E def) {
+		return ParamParser.parseEnum(getSingleParam(name), type, def);
+	}
+
+	/**
+	 * Tworzy obiekt formularza i wypełnia jego pola parametrami o tych samych
+	 * nazwach. Sposób wypełniania jest tworzony raz dla każdej klasy.
+	 * 
+	 * @param type klasa formularza (z konstruktorem bezparametrowym)
+	 * @return obiekt formularza
+	 * @throws IllegalArgumentException klasa nie może być formularzem
+	 */
+	public default <T> T bindParams(Class<T> type) {
+		return FormBinder.bind(type, getParams());
+	}
+
+	/**
+	 * @return zmienne ścieżki (np. {@code /user/{id}}), domyślnie brak zmiennych
+	 */
+	public default PathVariables getPathVariables() {
+		return PathVariables.EMPTY;
+	}
+
+	/**
+	 * Zwraca wartość zmiennej ścieżki po indeksie
+	 * 
+	 * @param index indeks zmiennej
+	 * @return wartość zmiennej
+	 */
+	public default String getPathVariable(int index) {
+		return getPathVariables().get(index);
+	}
+
+	/**
+	 * Zwraca wartość zmiennej ścieżki po nazwie, lub null gdy jej nie znaleziono
+	 * 
+	 * @param name nazwa zmiennej
+	 * @return wartość zmiennej lub null
+	 */
+	public default String getPathVariable(String name) {
+		return getPathVariables().get(name);
+	}
+
 }
@@ -20,7 +20,28 @@ public @interface Path {
 	boolean redirectAfterPath() default false;
 
 	/**
-	 * Ścieżka
+	 * Metody HTTP obsługiwane przez kontroler (pusta tablica - wszystkie, oprócz
+	 * OPTIONS). HEAD jest obsługiwany przez kontroler GET, bez wysyłania treści
+	 * widoku. Dla metody nieobsługiwanej wysyłany jest błąd 405.
+	 */
+	HttpMethodType[] methods() default {};
+
+	/**
+	 * Czy wczytać treść zapytania przed wywołaniem kontrolera, bez blokowania
+	 * wątku (Servlet 3.1, {@code ReadListener})? Wątek jest zajęty tylko podczas
+	 * pracy kontrolera, a nie podczas przesyłania danych przez klienta. Treść jest
+	 * dostępna przez metody getRequest... kontrolera, parametry formularza są
+	 * dekodowane przez dekoder frameworka (części multipart - z wczytanej treści,
+	 * pliki przechowywane w pamięci). Wymaga servletu z obsługą async - bez niej
+	 * treść jest czytana normalnie.
+	 */
+	boolean asyncBody() default false;
+
+	/**
+	 * Ścieżka. Może zawierać zmienne jako całe segmenty, np.
+	 * {@code /user/{id:int}/orders/{orderId}} - typ {@code int} (tylko cyfry) lub
+	 * bez typu (dowolny segment). Segmenty stałe mają pierwszeństwo przed
+	 * zmiennymi.
 	 */
 	String[] value();
 
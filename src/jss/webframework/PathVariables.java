@@ -0,0 +1,140 @@
+package jss.webframework;
+
+/**
+ * Values of path variables (from path like {@code /user/{id}/orders/{orderId}}).
+ * Values are slices of request path - substring is made only on access.
+ *
+ * @author lukas
+ */
+public class PathVariables {
+	static final PathVariables EMPTY = new PathVariables("", new String[0], null);
+
+	private final String path;
+	private final String[] names;
+	private final int[] bounds;// start and end of each variable in path
+
+	/**
+	 * @param path   request path
+	 * @param names  names of variables
+	 * @param bounds bounds of variables, two items (start, end) for each variable
+	 */
+	PathVariables(String path, String[] names, int[] bounds) {
+		this.path = path;
+		this.names = names;
+		this.bounds = bounds;
+	}
+
+	/**
+	 * @return number of variables
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * @param index index of variable
+	 * @return name of variable
+	 */
+	public String getName(int index) {
+		return names[index];
+	}
+
+	/**
+	 * @param name name of variable
+	 * @return index of variable, or -1 if not found
+	 */
+	public int indexOf(String name) {
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param index index of variable
+	 * @return value of variable
+	 */
+	public String get(int index) {
+		checkIndex(index);
+		return path.substring(bounds[2 * index], bounds[2 * index + 1]);
+	}
+
+	/**
+	 * @param name name of variable
+	 * @return value of variable, or null if not found
+	 */
+	public String get(String name) {
+		int index = indexOf(name);
+		return index < 0 ? null : get(index);
+	}
+
+	/**
+	 * Parses variable as long, without creating substring
+	 *
+	 * @param index index of variable
+	 * @return value of variable
+	 * @throws NumberFormatException value is not a number
+	 */
+	public long getLong(int index) {
+		checkIndex(index);
+		return Long.parseLong(path, bounds[2 * index], bounds[2 * index + 1], 10);
+	}
+
+	/**
+	 * Parses variable as int, without creating substring
+	 *
+	 * @param index index of variable
+	 * @return value of variable
+	 * @throws NumberFormatException value is not a number
+	 */
+	public int getInt(int index) {
+		checkIndex(index);
+		return Integer.parseInt(path, bounds[2 * index], bounds[2 * index + 1], 10);
+	}
+
+	/**
+	 * @param index index of variable
+	 * @return start of variable value in {@link #getPath()}
+	 */
+	public int getStart(int index) {
+		checkIndex(index);
+		return bounds[2 * index];
+	}
+
+	/**
+	 * @param index index of variable
+	 * @return end (exclusive) of variable value in {@link #getPath()}
+	 */
+	public int getEnd(int index) {
+		checkIndex(index);
+		return bounds[2 * index + 1];
+	}
+
+	/**
+	 * @return request path, which contains values of variables
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= names.length) {
+			throw new IndexOutOfBoundsException("Path variable index: " + index + ", size: " + names.length);
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("PathVariables [");
+		for (int i = 0; i < names.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(names[i]).append('=').append(get(i));
+		}
+		return sb.append(']').toString();
+	}
+
+}
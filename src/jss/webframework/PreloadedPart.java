@@ -0,0 +1,100 @@
+package jss.webframework;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.servlet.http.Part;
+
+/**
+ * Part of multipart/form-data request, which body was read before controller
+ * was called ({@link Path#asyncBody()}) - container cannot parse parts of
+ * consumed stream, so they are parsed by {@link MultipartIterator}, and content
+ * is kept in memory.
+ *
+ * @author lukas
+ */
+final class PreloadedPart implements Part {
+	private final String name;
+	private final String fileName;
+	private final Map<String, String> headers;// lower case names
+	private byte[] content;// null - deleted
+
+	/**
+	 * @param part part read from preloaded body (content is read)
+	 */
+	PreloadedPart(MultipartPart part) throws IOException {
+		this.name = part.getName();
+		this.fileName = part.getSubmittedFileName();
+		this.headers = part.getHeaders();
+		this.content = part.getInputStream().readAllBytes();
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		if (content == null) {
+			throw new IOException("Part was deleted!");
+		}
+		return new ByteArrayInputStream(content);
+	}
+
+	@Override
+	public String getContentType() {
+		return headers.get("content-type");
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String getSubmittedFileName() {
+		return fileName;
+	}
+
+	@Override
+	public long getSize() {
+		return content != null ? content.length : 0;
+	}
+
+	@Override
+	public void write(String fileName) throws IOException {
+		if (content == null) {
+			throw new IOException("Part was deleted!");
+		}
+		Files.write(Paths.get(fileName), content);
+	}
+
+	@Override
+	public void delete() {
+		content = null;
+	}
+
+	@Override
+	public String getHeader(String name) {
+		return headers.get(name.toLowerCase());
+	}
+
+	@Override
+	public Collection<String> getHeaders(String name) {
+		String value = getHeader(name);
+		return value != null ? Collections.singletonList(value) : Collections.emptyList();
+	}
+
+	@Override
+	public Collection<String> getHeaderNames() {
+		return headers.keySet();
+	}
+
+	@Override
+	public String toString() {
+		return "PreloadedPart [name=" + name + ", fileName=" + fileName + ", size=" + getSize() + "]";
+	}
+
+}
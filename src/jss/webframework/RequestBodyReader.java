@@ -0,0 +1,153 @@
+package jss.webframework;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Reads request body to memory. Buffer is sized from Content-Length; bodies of
+ * unknown or small length are read to pooled buffers, so only the result is
+ * allocated.
+ *
+ * @author lukas
+ */
+final class RequestBodyReader {
+	private static final int POOLED_BUFFER_SIZE = 16 * 1024;
+	private static final int POOL_SIZE = 64;
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+	private static final ArrayBlockingQueue<byte[]> POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+
+	private RequestBodyReader() {
+	}
+
+	/**
+	 * Consumer of read body
+	 */
+	interface BodyHandler<T> {
+		/**
+		 * @param buffer buffer with body at [0, length)
+		 * @param length length of body
+		 * @param pooled is buffer pooled? (pooled buffer cannot be kept after
+		 *               return)
+		 */
+		T handle(byte[] buffer, int length, boolean pooled) throws IOException;
+	}
+
+	/**
+	 * Reads whole body
+	 *
+	 * @param in            request stream
+	 * @param contentLength length from Content-Length, or -1 if unknown
+	 * @param maxSize       max size of body, or -1 for no limit
+	 * @param handler       consumer of body
+	 * @return result of handler
+	 * @throws RequestTooLargeException body is larger than max size
+	 */
+	static <T> T read(InputStream in, long contentLength, long maxSize, BodyHandler<T> handler) throws IOException {
+		long limit = maxSize >= 0 ? Math.min(maxSize, MAX_ARRAY_SIZE) : MAX_ARRAY_SIZE;
+		if (contentLength > limit) {
+			throw new RequestTooLargeException(limit);
+		}
+
+		byte[] pooled = null;
+		byte[] buf;
+		if (contentLength > POOLED_BUFFER_SIZE) {// exact size
+			buf = new byte[(int) contentLength];
+		} else {
+			pooled = POOL.poll();
+			if (pooled == null) {
+				pooled = new byte[POOLED_BUFFER_SIZE];
+			}
+			buf = pooled;
+		}
+
+		try {
+			int length = 0;
+			while (true) {
+				if (length == buf.length) {
+					if (contentLength >= 0 && length >= contentLength) {// declared length read
+						break;
+					}
+					if (length >= limit) {
+						if (in.read() < 0) {
+							break;
+						}
+						throw new RequestTooLargeException(limit);
+					}
+					// unknown length - grow
+					byte[] larger = new byte[(int) Math.min(2L * buf.length, limit)];
+					System.arraycopy(buf, 0, larger, 0, length);
+					buf = larger;
+				}
+
+				int n = in.read(buf, length, buf.length - length);
+				if (n < 0) {
+					break;
+				}
+				length += n;
+				if (length > limit) {
+					throw new RequestTooLargeException(limit);
+				}
+			}
+
+			return handler.handle(buf, length, buf == pooled);
+		} finally {
+			if (pooled != null) {
+				POOL.offer(pooled);
+			}
+		}
+	}
+
+	/**
+	 * Stream, which fails, when more than max size bytes are read
+	 *
+	 * @param in      request stream
+	 * @param maxSize max size of body
+	 * @return limited stream
+	 */
+	static InputStream limit(InputStream in, long maxSize) {
+		return new FilterInputStream(in) {
+			private long count = 0;
+
+			@Override
+			public int read() throws IOException {
+				int b = super.read();
+				if (b >= 0) {
+					count(1);
+				}
+				return b;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int n = super.read(b, off, len);
+				if (n > 0) {
+					count(n);
+				}
+				return n;
+			}
+
+			@Override
+			public long skip(long n) throws IOException {
+				long skipped = super.skip(n);
+				count(skipped);
+				return skipped;
+			}
+
+			@Override
+			public boolean markSupported() {
+				return false;
+			}
+
+			private void count(long n) throws RequestTooLargeException {
+				count += n;
+				if (count > maxSize) {
+					throw new RequestTooLargeException(maxSize);
+				}
+			}
+		};
+	}
+
+}
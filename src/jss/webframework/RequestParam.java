@@ -1,15 +1,24 @@
 package jss.webframework;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URLDecoder;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.zip.CRC32C;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.Part;
@@ -40,10 +49,8 @@ public class RequestParam {
 		this.name = name;
 
 		this.values = new ArrayList<String>();
-		if (values != null) {
-			for (String v : values) {
-				this.values.add(URLDecoder.decode(v, StandardCharsets.UTF_8));// dekoduj URL
-			}
+		if (values != null) {// wartości już zdekodowane
+			this.values.addAll(Arrays.asList(values));
 		}
 
 		this.files = new ArrayList<FileInfo>();
@@ -186,6 +193,8 @@ public class RequestParam {
 	 * @author lukas
 	 */
 	public static class FileInfo {
+		private static final int COPY_BUFFER_SIZE = 256 * 1024;
+
 		private final long size;
 		private final String fileName;
 		private final String contentType;
@@ -252,30 +261,176 @@ public class RequestParam {
 		}
 
 		/**
-		 * Zapisuje plik na dysku w podanej ścieżce bezwzględnej
+		 * Zapisuje plik na dysku w podanej ścieżce bezwzględnej (istniejący plik jest
+		 * zastępowany). Gdy system plików nie obsługuje przenoszenia atomowego, plik
+		 * jest przenoszony zwykle.
 		 * 
 		 * @param path     ścieżka bezwzględna do katalogu
 		 * @param filename nazwa pliku
-		 * @throws IOException w przypadku błędu, lub gdy plik został już zapisany!
+		 * @throws IOException w przypadku błędu, lub gdy plik został już zapisany!
+		 * @see #saveFile(java.nio.file.Path, UploadDigest)
 		 */
 		public void saveFileInPath(String path, String filename) throws IOException {
 			if (part == null || request == null) {
 				throw new IOException("File was already saved!");
 			}
 
-			if (!path.endsWith(File.separator)) {
-				path = path + File.separator;
+			java.nio.file.Path dir = Paths.get(path);
+			Files.createDirectories(dir);// utwórz foldery
+
+			// bez wymagania przenoszenia atomowego i usuwania pliku kontenera
+			save(dir.resolve(filename), null, false);
+		}
+
+		/**
+		 * Zapisuje plik na dysku, bez ponownego kopiowania danych gdy to możliwe.
+		 * Najpierw próbuje {@link Part#write(String)} (kontener zwykle tylko
+		 * przenosi swój plik tymczasowy), w przeciwnym razie kopiuje przez
+		 * {@link FileChannel}. Gdy podano rodzaj skrótu - skrót jest liczony w
+		 * trakcie tego samego kopiowania (bez ponownego czytania pliku).
+		 * <p>
+		 * Gwarancje:
+		 * <ul>
+		 * <li>plik docelowy pojawia się atomowo - dane są zapisywane do pliku
+		 * tymczasowego w tym samym katalogu, a następnie przenoszone
+		 * ({@link StandardCopyOption#ATOMIC_MOVE}), istniejący plik jest zastępowany;
+		 * gdy system plików nie obsługuje przenoszenia atomowego, zgłaszany jest
+		 * {@link java.nio.file.AtomicMoveNotSupportedException}</li>
+		 * <li>w przypadku błędu plik tymczasowy jest usuwany, a plik docelowy
+		 * pozostaje bez zmian</li>
+		 * <li>po zapisie plik tymczasowy kontenera jest usuwany
+		 * ({@link Part#delete()})</li>
+		 * </ul>
+		 * Katalog docelowy musi istnieć.
+		 * 
+		 * @param file   plik docelowy
+		 * @param digest rodzaj skrótu, lub null
+		 * @return skrót zawartości pliku, lub null gdy nie podano rodzaju skrótu
+		 * @throws IOException w przypadku błędu, lub gdy plik został już zapisany!
+		 */
+		public byte[] saveFile(java.nio.file.Path file, UploadDigest digest) throws IOException {
+			return save(file, digest, true);
+		}
+
+		/**
+		 * Zapis pliku przez plik tymczasowy
+		 * 
+		 * @param strict czy wymagać przenoszenia atomowego i usunąć plik
+		 *               tymczasowy kontenera? (bez tego - przeniesienie zwykłe, gdy
+		 *               atomowe nie jest obsługiwane)
+		 * @return skrót, lub null
+		 */
+		private byte[] save(java.nio.file.Path file, UploadDigest digest, boolean strict) throws IOException {
+			if (part == null) {
+				throw new IOException("File was already saved!");
 			}
-			new File(path).mkdirs();// utwórz foldery
 
-			File file = new File(path + filename);
-			try (InputStream input = part.getInputStream()) {
-				Files.copy(input, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			file = file.toAbsolutePath();
+			java.nio.file.Path temp = file.resolveSibling("." + file.getFileName() + "." + System.nanoTime() + ".upload");
+
+			byte[] result = null;
+			try {
+				if (digest != null) {// kopiowanie z liczeniem skrótu
+					result = copy(temp, digest);
+				} else if (!write(temp)) {// kontener nie zapisał pliku - kopiuj
+					copy(temp, null);
+				}
+				try {
+					Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				} catch (AtomicMoveNotSupportedException e) {
+					if (strict) {
+						throw e;
+					}
+					Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} catch (IOException | RuntimeException e) {
+				Files.deleteIfExists(temp);
+				throw e;
 			}
 
 			// file was saved, clear fields need to save
+			if (strict) {
+				part.delete();
+			}
 			part = null;
 			request = null;
+
+			return result;
+		}
+
+		/**
+		 * Zapis przez kontener
+		 * 
+		 * @return czy plik został zapisany
+		 */
+		private boolean write(java.nio.file.Path temp) {
+			try {
+				part.write(temp.toString());
+			} catch (IOException e) {
+				return false;
+			}
+			// niektóre kontenery zapisują względem własnego katalogu - sprawdź wynik
+			try {
+				return Files.isRegularFile(temp) && Files.size(temp) == part.getSize();
+			} catch (IOException e) {
+				return false;
+			}
+		}
+
+		/**
+		 * Kopiowanie zawartości do pliku, opcjonalnie z liczeniem skrótu
+		 * 
+		 * @return skrót, lub null
+		 */
+		private byte[] copy(java.nio.file.Path temp, UploadDigest digest) throws IOException {
+			try (InputStream input = part.getInputStream();
+					FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+							StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+				if (digest == null) {// bez skrótu - transferFrom (bez kopiowania dla plików)
+					ReadableByteChannel in = input instanceof FileInputStream
+							? ((FileInputStream) input).getChannel()
+							: Channels.newChannel(input);
+					long position = 0;
+					long n;
+					while ((n = out.transferFrom(in, position, Long.MAX_VALUE)) > 0) {
+						position += n;
+					}
+					return null;
+				}
+
+				MessageDigest sha = null;
+				CRC32C crc = null;
+				if (digest == UploadDigest.SHA_256) {
+					try {
+						sha = MessageDigest.getInstance("SHA-256");
+					} catch (NoSuchAlgorithmException e) {
+						throw new IOException(e);
+					}
+				} else {
+					crc = new CRC32C();
+				}
+
+				// tablica na stercie - strumień i skrót działają na tablicach
+				byte[] buffer = new byte[COPY_BUFFER_SIZE];
+				int n;
+				while ((n = input.read(buffer)) >= 0) {
+					if (sha != null) {
+						sha.update(buffer, 0, n);
+					} else {
+						crc.update(buffer, 0, n);
+					}
+					ByteBuffer data = ByteBuffer.wrap(buffer, 0, n);
+					while (data.hasRemaining()) {
+						out.write(data);
+					}
+				}
+
+				if (sha != null) {
+					return sha.digest();
+				}
+				return ByteBuffer.allocate(4).putInt((int) crc.getValue()).array();
+			}
 		}
 
 		@Override
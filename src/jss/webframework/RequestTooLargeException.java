@@ -0,0 +1,31 @@
+package jss.webframework;
+
+import java.io.IOException;
+
+/**
+ * Treść zapytania przekracza maksymalny rozmiar (patrz
+ * {@link WebAppConfig#getMaxBodySize()}) - odpowiedź 413
+ *
+ * @author lukas
+ */
+public class RequestTooLargeException extends IOException {
+	private static final long serialVersionUID = -3915370455720671208L;
+
+	private final long maxSize;
+
+	/**
+	 * @param maxSize maksymalny rozmiar treści
+	 */
+	public RequestTooLargeException(long maxSize) {
+		super("Request body too large! Max size: " + maxSize);
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Maksymalny rozmiar treści
+	 */
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+}
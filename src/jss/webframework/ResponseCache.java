@@ -0,0 +1,286 @@
+package jss.webframework;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Cache of controller responses (controllers with {@link CachedResponse}).
+ * Entries expire after TTL, size of cache is limited by weight (body bytes) -
+ * segmented LRU: new entries go to probation segment, entries hit again are
+ * moved to protected segment, so one-time responses do not evict often used
+ * ones.
+ *
+ * @author lukas
+ */
+public final class ResponseCache {
+	private static final int ENTRY_OVERHEAD = 256;// approximate size of entry without body
+
+	private final long maxWeight;
+	private final long protectedMaxWeight;
+	private final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>(64, 0.75f, true);
+	private final LinkedHashMap<String, Entry> protectedSegment = new LinkedHashMap<>(64, 0.75f, true);
+	private long probationWeight = 0;
+	private long protectedWeight = 0;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param maxWeight maximum size of cached responses, in bytes
+	 */
+	ResponseCache(long maxWeight) {
+		this.maxWeight = maxWeight;
+		this.protectedMaxWeight = maxWeight * 4 / 5;
+	}
+
+	/**
+	 * Number of requests answered from cache
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Number of requests not found in cache (or expired)
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Number of entries evicted because of cache size
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Number of cached responses
+	 */
+	public synchronized int getSize() {
+		return probation.size() + protectedSegment.size();
+	}
+
+	/**
+	 * Size of cached responses, in bytes (approximately)
+	 */
+	public synchronized long getWeight() {
+		return probationWeight + protectedWeight;
+	}
+
+	/**
+	 * Removes all cached responses
+	 */
+	public synchronized void clear() {
+		probation.clear();
+		protectedSegment.clear();
+		probationWeight = 0;
+		protectedWeight = 0;
+	}
+
+	/**
+	 * Key of request
+	 *
+	 * @param path     normalized request path
+	 * @param cached   cache declaration of controller
+	 * @param locale   resolved locale
+	 * @param encoding negotiated content encoding, or null
+	 */
+	static String key(HttpServletRequest request, String path, CachedResponse cached, Locale locale,
+			String encoding) {
+		StringBuilder sb = new StringBuilder(path);
+		for (String name : cached.params()) {// values with length - no ambiguity of separators
+			sb.append('\n');
+			String[] values = request.getParameterValues(name);
+			if (values != null) {
+				for (String v : values) {
+					sb.append(v.length()).append(':').append(v);
+				}
+			}
+		}
+		sb.append('\n');
+		if (cached.locale()) {
+			sb.append(locale.toLanguageTag());
+		}
+		sb.append('\n');
+		if (encoding != null) {
+			sb.append(encoding);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Sends cached response, if there is valid entry
+	 *
+	 * @param head is HEAD request? (without body)
+	 * @return was response sent?
+	 */
+	boolean serve(String key, HttpServletRequest request, HttpServletResponse response, boolean head)
+			throws IOException {
+		Entry entry = get(key);
+		if (entry == null) {
+			misses.increment();
+			return false;
+		}
+		hits.increment();
+
+		if (entry.contentType != null) {
+			response.setContentType(entry.contentType);
+		}
+		String etag = null;
+		String previous = null;
+		for (String[] header : entry.headers) {// values of header are stored together
+			if (header[0].equals(previous)) {
+				response.addHeader(header[0], header[1]);
+			} else {// first value replaces header set before (e.g. by filter)
+				response.setHeader(header[0], header[1]);
+				previous = header[0];
+			}
+			if (header[0].equalsIgnoreCase("ETag")) {
+				etag = header[1];
+			}
+		}
+		if (etag != null && FileResponse.notModified(request, etag, -1)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return true;
+		}
+
+		response.setContentLength(entry.body.length);
+		if (!head) {
+			response.getOutputStream().write(entry.body);
+		}
+		return true;
+	}
+
+	/**
+	 * Stores response, if it can be cached (200, without cookies, not larger than
+	 * 1/8 of cache)
+	 *
+	 * @param response captured response (after {@link CapturingResponse#finish()})
+	 * @param ttl      time to live in seconds
+	 */
+	void store(String key, CapturingResponse response, long ttl) {
+		byte[] body = response.getBody();
+		if (body == null || response.getStatus() != HttpServletResponse.SC_OK
+				|| response.containsHeader("Set-Cookie")) {
+			return;
+		}
+		long weight = body.length + key.length() * 2L + ENTRY_OVERHEAD;
+		if (weight > maxWeight / 8) {// too large - would evict many entries
+			return;
+		}
+
+		List<String[]> headers = new ArrayList<>();
+		for (String name : response.getHeaderNames()) {
+			if (name.equalsIgnoreCase("Content-Type") || name.equalsIgnoreCase("Content-Length")
+					|| name.equalsIgnoreCase("Date")) {
+				continue;
+			}
+			for (String value : response.getHeaders(name)) {
+				headers.add(new String[] { name, value });
+			}
+		}
+
+		put(key, new Entry(response.getContentType(), headers, body, weight,
+				System.currentTimeMillis() + ttl * 1000));
+	}
+
+	private synchronized Entry get(String key) {
+		Entry entry = protectedSegment.get(key);
+		boolean isProtected = entry != null;
+		if (!isProtected) {
+			entry = probation.get(key);
+		}
+		if (entry == null) {
+			return null;
+		}
+		if (entry.expires <= System.currentTimeMillis()) {// expired
+			remove(key);
+			return null;
+		}
+
+		if (!isProtected) {// second hit - to protected segment
+			probation.remove(key);
+			probationWeight -= entry.weight;
+			protectedSegment.put(key, entry);
+			protectedWeight += entry.weight;
+			demote();
+		}
+		return entry;
+	}
+
+	private synchronized void put(String key, Entry entry) {
+		remove(key);
+		probation.put(key, entry);
+		probationWeight += entry.weight;
+
+		// evict least recently used - from probation first
+		while (probationWeight + protectedWeight > maxWeight) {
+			LinkedHashMap<String, Entry> segment = probation.isEmpty() ? protectedSegment : probation;
+			Iterator<Entry> eldest = segment.values().iterator();
+			Entry e = eldest.next();
+			eldest.remove();
+			if (segment == probation) {
+				probationWeight -= e.weight;
+			} else {
+				protectedWeight -= e.weight;
+			}
+			evictions.increment();
+		}
+	}
+
+	private void remove(String key) {
+		Entry e = protectedSegment.remove(key);
+		if (e != null) {
+			protectedWeight -= e.weight;
+		}
+		e = probation.remove(key);
+		if (e != null) {
+			probationWeight -= e.weight;
+		}
+	}
+
+	/**
+	 * Moves least recently used entries of full protected segment to probation
+	 */
+	private void demote() {
+		while (protectedWeight > protectedMaxWeight) {
+			Iterator<Map.Entry<String, Entry>> eldest = protectedSegment.entrySet().iterator();
+			Map.Entry<String, Entry> e = eldest.next();
+			eldest.remove();
+			protectedWeight -= e.getValue().weight;
+			probation.put(e.getKey(), e.getValue());
+			probationWeight += e.getValue().weight;
+		}
+	}
+
+	/**
+	 * Cached response
+	 */
+	private static final class Entry {
+		private final String contentType;
+		private final List<String[]> headers;
+		private final byte[] body;
+		private final long weight;
+		private final long expires;
+
+		private Entry(String contentType, List<String[]> headers, byte[] body, long weight, long expires) {
+			this.contentType = contentType;
+			this.headers = headers;
+			this.body = body;
+			this.weight = weight;
+			this.expires = expires;
+		}
+	}
+
+}
@@ -0,0 +1,498 @@
+package jss.webframework;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable, case-insensitive radix trie of paths. Built once (at servlet
+ * init), then searched without any allocation.
+ * <p>
+ * Paths may contain variables as whole segments: {@code /user/{id:int}/orders}.
+ * Values of variables are returned as bounds (start, end) in searched path -
+ * see {@link #newCaptures()}. Literal segments win over variables.
+ *
+ * @author lukas
+ *
+ * @param <T> type of value stored for path
+ */
+final class RouteTrie<T> {
+	private final Node<T> root;
+	private final int maxVariables;// max number of variables in single path
+
+	private RouteTrie(Node<T> root, int maxVariables) {
+		this.root = root;
+		this.maxVariables = maxVariables;
+	}
+
+	/**
+	 * Creates array for bounds of path variables, for use with
+	 * {@link #find(String, int[])}. Bounds of found variables are at start of
+	 * array: variable {@code i} is {@code path.substring(c[2 * i], c[2 * i + 1])}.
+	 *
+	 * @return captures array, or null when there are no paths with variables
+	 */
+	int[] newCaptures() {
+		return maxVariables == 0 ? null : new int[4 * maxVariables + 1];
+	}
+
+	/**
+	 * Search the longest path matching beginning of request path. Path shorter than
+	 * request path matches only if it accepts sub paths.
+	 *
+	 * @param path     request path (without trailing slash)
+	 * @param captures array from {@link #newCaptures()}, filled with bounds of
+	 *                 path variables (may be null when there are no variables)
+	 * @return found entry, or null if not found
+	 */
+	Entry<T> find(String path, int[] captures) {
+		if (maxVariables == 0) {
+			return findLiteral(path);
+		}
+
+		captures[captures.length - 1] = -1;// best length
+
+		return search(root, path, 0, 0, captures, null);
+	}
+
+	/**
+	 * Depth-first search - literal children first, then variables. Longer match
+	 * wins, from equal matches the first found.
+	 *
+	 * @param node     current node, matched to pos
+	 * @param path     request path
+	 * @param pos      position in path
+	 * @param var      number of variables matched so far
+	 * @param captures best bounds, work bounds, best length
+	 * @param best     best entry so far
+	 * @return best entry
+	 */
+	private Entry<T> search(Node<T> node, String path, int pos, int var, int[] captures, Entry<T> best) {
+		final int bestLenIdx = captures.length - 1;
+		final int work = 2 * maxVariables;
+		final int len = path.length();
+
+		if (node.entry != null && pos > captures[bestLenIdx] && (pos == len || node.entry.prefix)) {
+			best = node.entry;
+			captures[bestLenIdx] = pos;
+			System.arraycopy(captures, work, captures, 0, 2 * var);
+		}
+
+		if (pos == len) {
+			return best;
+		}
+
+		Node<T> child = node.child(fold(path.charAt(pos)));
+		if (child != null && matchLabel(child.label, path, pos)) {
+			best = search(child, path, pos + child.label.length, var, captures, best);
+			if (captures[bestLenIdx] == len) {// whole path matched - nothing better
+				return best;
+			}
+		}
+
+		for (Node<T> v : node.variables) {
+			int end = v.type.match(path, pos);
+			if (end > pos) {
+				captures[work + 2 * var] = pos;
+				captures[work + 2 * var + 1] = end;
+				best = search(v, path, end, var + 1, captures, best);
+				if (captures[bestLenIdx] == len) {
+					return best;
+				}
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Does label match path at position?
+	 */
+	private static boolean matchLabel(char[] label, String path, int pos) {
+		if (path.length() - pos < label.length) {
+			return false;
+		}
+		for (int i = 0; i < label.length; i++) {
+			if (fold(path.charAt(pos + i)) != label[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Search in trie without variables
+	 */
+	private Entry<T> findLiteral(String path) {
+		final int len = path.length();
+
+		Node<T> node = root;
+		Entry<T> best = (len == 0 || (root.entry != null && root.entry.prefix)) ? root.entry : null;
+		int pos = 0;
+
+		while (pos < len) {
+			Node<T> child = node.child(fold(path.charAt(pos)));
+			if (child == null) {
+				break;
+			}
+
+			char[] label = child.label;
+			if (len - pos < label.length) {// request path ends inside label - no more paths
+				break;
+			}
+
+			int i = 1;// first char checked by child()
+			while (i < label.length && fold(path.charAt(pos + i)) == label[i]) {
+				i++;
+			}
+			if (i < label.length) {
+				break;
+			}
+
+			pos += label.length;
+			node = child;
+
+			if (node.entry != null && (pos == len || node.entry.prefix)) {
+				best = node.entry;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Case folding, same as in {@link String#equalsIgnoreCase(String)}
+	 */
+	static char fold(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	/**
+	 * Removes trailing slash from path
+	 */
+	static String normalize(String path) {
+		if (path.endsWith("/")) {
+			path = path.substring(0, path.length() - 1);
+		}
+		return path;
+	}
+
+	/**
+	 * Path found in trie
+	 *
+	 * @param <T> type of value
+	 */
+	static final class Entry<T> {
+		private final String path;
+		private final T value;
+		private final boolean prefix;
+		private final String[] variables;
+
+		private Entry(String path, T value, boolean prefix, String[] variables) {
+			this.path = path;
+			this.value = value;
+			this.prefix = prefix;
+			this.variables = variables;
+		}
+
+		/**
+		 * Path (without trailing slash), as registered
+		 */
+		String getPath() {
+			return path;
+		}
+
+		/**
+		 * Value for path
+		 */
+		T getValue() {
+			return value;
+		}
+
+		/**
+		 * Does path match sub paths?
+		 */
+		boolean isPrefix() {
+			return prefix;
+		}
+
+		/**
+		 * Names of path variables, in order of appearance
+		 */
+		String[] getVariables() {
+			return variables;
+		}
+	}
+
+	/**
+	 * Type of path variable - {@code {name}} or {@code {name:type}}
+	 */
+	private enum VariableType {
+		INT, // only digits
+		SEGMENT;// whole segment
+
+		/**
+		 * @return end of variable value in path, or -1 when value not matches type
+		 */
+		int match(String path, int pos) {
+			int end = path.indexOf('/', pos);
+			if (end < 0) {
+				end = path.length();
+			}
+
+			if (this == INT) {
+				for (int i = pos; i < end; i++) {
+					char c = path.charAt(i);
+					if (c < '0' || c > '9') {
+						return -1;
+					}
+				}
+			}
+
+			return end;
+		}
+
+		static VariableType of(String name) {
+			switch (name) {
+			case "":
+			case "string":
+				return SEGMENT;
+			case "int":
+				return INT;
+			default:
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Trie node (compiled, immutable)
+	 */
+	private static final class Node<T> {
+		private final char[] label;// folded edge label from parent
+		private final VariableType type;// type of variable, or null for literal node
+		private final char[] keys;// first chars of children labels, sorted
+		private final Node<T>[] children;
+		private final Node<T>[] variables;// variable children, most specific first
+		private final Entry<T> entry;
+
+		private Node(char[] label, VariableType type, char[] keys, Node<T>[] children, Node<T>[] variables,
+				Entry<T> entry) {
+			this.label = label;
+			this.type = type;
+			this.keys = keys;
+			this.children = children;
+			this.variables = variables;
+			this.entry = entry;
+		}
+
+		private Node<T> child(char c) {
+			int idx = Arrays.binarySearch(keys, c);
+			return idx < 0 ? null : children[idx];
+		}
+	}
+
+	/**
+	 * Trie builder
+	 *
+	 * @param <T> type of value
+	 */
+	static final class Builder<T> {
+		private final BuilderNode<T> root = new BuilderNode<>(new char[0], null);
+		private int maxVariables = 0;
+
+		/**
+		 * Adds path to trie. When the same path was added before - it is replaced.
+		 *
+		 * @param path   path
+		 * @param value  value for path
+		 * @param prefix does path match sub paths?
+		 * @return this builder
+		 * @throws IllegalArgumentException invalid path variable
+		 */
+		Builder<T> add(String path, T value, boolean prefix) {
+			path = normalize(path);
+
+			List<String> variables = new ArrayList<>(0);
+			BuilderNode<T> node = root;
+			int pos = 0;
+			while (pos < path.length()) {
+				int open = path.indexOf('{', pos);
+				node = addLiteral(node, path, pos, open < 0 ? path.length() : open);
+				if (open < 0) {
+					break;
+				}
+
+				// variable - must be whole segment
+				int close = path.indexOf('}', open);
+				if (open == 0 || path.charAt(open - 1) != '/' || close < 0
+						|| (close + 1 < path.length() && path.charAt(close + 1) != '/')) {
+					throw new IllegalArgumentException("Path variable must be whole segment: " + path);
+				}
+
+				String name = path.substring(open + 1, close);
+				String type = "";
+				int colon = name.indexOf(':');
+				if (colon > -1) {
+					type = name.substring(colon + 1).trim();
+					name = name.substring(0, colon);
+				}
+				name = name.trim();
+
+				VariableType varType = VariableType.of(type);
+				if (varType == null) {
+					throw new IllegalArgumentException("Unknown type of path variable '" + type + "': " + path);
+				}
+				if (name.isEmpty() || variables.contains(name)) {
+					throw new IllegalArgumentException("Empty or duplicated path variable name: " + path);
+				}
+
+				variables.add(name);
+				node = node.variable(varType);
+				pos = close + 1;
+			}
+
+			maxVariables = Math.max(maxVariables, variables.size());
+			node.entry = new Entry<>(path, value, prefix, variables.toArray(new String[variables.size()]));
+			return this;
+		}
+
+		/**
+		 * Adds literal part of path (from start to end)
+		 *
+		 * @return node of literal end
+		 */
+		private BuilderNode<T> addLiteral(BuilderNode<T> node, String path, int start, int end) {
+			char[] key = new char[end - start];
+			for (int i = 0; i < key.length; i++) {
+				key[i] = fold(path.charAt(start + i));
+			}
+
+			int pos = 0;
+			while (pos < key.length) {
+				BuilderNode<T> child = node.child(key[pos]);
+				if (child == null) {// new leaf with rest of key
+					child = new BuilderNode<>(Arrays.copyOfRange(key, pos, key.length), null);
+					node.addChild(child);
+					return child;
+				}
+
+				// common part of label and key
+				int common = 0;
+				while (common < child.label.length && pos + common < key.length
+						&& child.label[common] == key[pos + common]) {
+					common++;
+				}
+
+				if (common < child.label.length) {// split edge
+					BuilderNode<T> middle = new BuilderNode<>(Arrays.copyOf(child.label, common), null);
+					node.replaceChild(middle);
+					child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+					middle.addChild(child);
+					child = middle;
+				}
+
+				node = child;
+				pos += common;
+			}
+
+			return node;
+		}
+
+		/**
+		 * @return immutable trie
+		 */
+		RouteTrie<T> build() {
+			return new RouteTrie<>(root.compile(), maxVariables);
+		}
+	}
+
+	/**
+	 * Trie node used while building
+	 */
+	private static final class BuilderNode<T> {
+		private char[] label;
+		private final VariableType type;
+		private BuilderNode<T>[] children = newArray(0);
+		private final BuilderNode<T>[] variables = newArray(VariableType.values().length);
+		private Entry<T> entry;
+
+		private BuilderNode(char[] label, VariableType type) {
+			this.label = label;
+			this.type = type;
+		}
+
+		private BuilderNode<T> variable(VariableType varType) {
+			BuilderNode<T> node = variables[varType.ordinal()];
+			if (node == null) {
+				node = new BuilderNode<>(new char[0], varType);
+				variables[varType.ordinal()] = node;
+			}
+			return node;
+		}
+
+		private int index(char c) {
+			int lo = 0;
+			int hi = children.length - 1;
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				char k = children[mid].label[0];
+				if (k < c) {
+					lo = mid + 1;
+				} else if (k > c) {
+					hi = mid - 1;
+				} else {
+					return mid;
+				}
+			}
+			return -(lo + 1);
+		}
+
+		private BuilderNode<T> child(char c) {
+			int idx = index(c);
+			return idx < 0 ? null : children[idx];
+		}
+
+		private void addChild(BuilderNode<T> child) {
+			int idx = -(index(child.label[0]) + 1);
+			BuilderNode<T>[] arr = newArray(children.length + 1);
+			System.arraycopy(children, 0, arr, 0, idx);
+			arr[idx] = child;
+			System.arraycopy(children, idx, arr, idx + 1, children.length - idx);
+			children = arr;
+		}
+
+		private void replaceChild(BuilderNode<T> child) {
+			children[index(child.label[0])] = child;
+		}
+
+		private Node<T> compile() {
+			char[] keys = new char[children.length];
+			Node<T>[] compiled = newNodeArray(children.length);
+			for (int i = 0; i < children.length; i++) {
+				keys[i] = children[i].label[0];
+				compiled[i] = children[i].compile();
+			}
+
+			List<Node<T>> vars = new ArrayList<>(0);
+			for (BuilderNode<T> v : variables) {// in order of VariableType - most specific first
+				if (v != null) {
+					vars.add(v.compile());
+				}
+			}
+
+			return new Node<>(label, type, keys, compiled, vars.toArray(newNodeArray(vars.size())), entry);
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <T> BuilderNode<T>[] newArray(int length) {
+			return (BuilderNode<T>[]) new BuilderNode<?>[length];
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <T> Node<T>[] newNodeArray(int length) {
+			return (Node<T>[]) new Node<?>[length];
+		}
+	}
+
+}
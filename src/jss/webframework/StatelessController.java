@@ -0,0 +1,56 @@
+package jss.webframework;
+
+/**
+ * Stateless controller - created once at startup and called concurrently for
+ * all requests. It must not keep request state in fields; all request data is
+ * in {@link ControllerData} (which is also {@link ParameterLoader} and
+ * {@link TranslationLoader}).
+ * 
+ * @author lukas
+ */
+public interface StatelessController {
+
+	/**
+	 * Handles request
+	 * 
+	 * @param data request data
+	 * @return view (or null, when there is no view)
+	 * @throws WebAppException error
+	 */
+	public AbstractView handle(ControllerData data) throws WebAppException;
+
+	/**
+	 * Entity tag of resource, checked before {@link #handle(ControllerData)} - when
+	 * it matches If-None-Match, 304 is sent without handling (GET and HEAD only)
+	 * 
+	 * @param data request data
+	 * @return entity tag (quoted, e.g. {@code "v12"} or {@code W/"v12"}), or null
+	 * @throws WebAppException error
+	 */
+	public default String getETag(ControllerData data) throws WebAppException {
+		return null;
+	}
+
+	/**
+	 * Last modification time of resource, checked before
+	 * {@link #handle(ControllerData)} with If-Modified-Since (GET and HEAD only)
+	 * 
+	 * @param data request data
+	 * @return time in milliseconds, or -1 when unknown
+	 * @throws WebAppException error
+	 */
+	public default long getLastModified(ControllerData data) throws WebAppException {
+		return -1;
+	}
+
+	/**
+	 * End of request handling, called always after {@link #handle(ControllerData)}
+	 * 
+	 * @param data request data
+	 * @throws WebAppException error
+	 */
+	public default void endJob(ControllerData data) throws WebAppException {
+		// do nothing, only for overriding
+	}
+
+}
@@ -0,0 +1,19 @@
+package jss.webframework;
+
+/**
+ * Skrót liczony podczas zapisu przesłanego pliku (patrz
+ * {@link RequestParam.FileInfo#saveFile(java.nio.file.Path, UploadDigest)})
+ *
+ * @author lukas
+ */
+public enum UploadDigest {
+	/**
+	 * SHA-256 (32 bajty)
+	 */
+	SHA_256,
+
+	/**
+	 * CRC32C (4 bajty, big endian)
+	 */
+	CRC32C;
+}
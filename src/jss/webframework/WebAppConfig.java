@@ -1,6 +1,9 @@
 package jss.webframework;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Properties;
+import java.util.Set;
 
 /**
  * Web app configuration
@@ -18,6 +21,21 @@ public class WebAppConfig {
 	private boolean addErrorCause = false;
 	private boolean defErrorShowStackTrace = false;
 	private boolean isProxy = false;// czy za proxy wewnątrznym?
+	private boolean formDecoder = false;
+	private long maxBodySize = -1;
+	private long asyncTimeout = 30000;
+	private int streamFlushInterval = 64 * 1024;
+	private boolean compression = false;
+	private int compressionMinSize = 1024;
+	private Set<String> compressionMimeTypes = new HashSet<>(Arrays.asList("text/html", "text/plain", "text/css",
+			"text/xml", "text/csv", "text/javascript", "application/javascript", "application/json",
+			"application/xml", "image/svg+xml"));
+	private boolean autoEtag = false;
+	private boolean weakEtag = false;
+	private long responseCacheSize = 32 * 1024 * 1024;
+	private boolean devMode = false;
+	private int jsonBufferSize = 32 * 1024;
+	private boolean validateJsp = false;
 	private Properties ownProperties;
 
 	/**
@@ -111,6 +129,160 @@ public class WebAppConfig {
 		this.isProxy = isProxy;
 	}
 
+	/**
+	 * Decode query string and application/x-www-form-urlencoded body by framework
+	 * decoder, instead of container parameters?
+	 */
+	public boolean isFormDecoder() {
+		return formDecoder;
+	}
+
+	public void setFormDecoder(boolean formDecoder) {
+		this.formDecoder = formDecoder;
+	}
+
+	/**
+	 * Max size of request body (in bytes), read by controller as data, or as form
+	 * by framework decoder. Larger requests are rejected with 413. -1 - no limit.
+	 */
+	public long getMaxBodySize() {
+		return maxBodySize;
+	}
+
+	public void setMaxBodySize(long maxBodySize) {
+		this.maxBodySize = maxBodySize;
+	}
+
+	/**
+	 * Timeout of async request processing (in milliseconds), e.g. reading body of
+	 * {@link Path#asyncBody()} controllers, or waiting for view of
+	 * {@link AbstractAsyncController}. 0 - no timeout.
+	 */
+	public long getAsyncTimeout() {
+		return asyncTimeout;
+	}
+
+	public void setAsyncTimeout(long asyncTimeout) {
+		this.asyncTimeout = asyncTimeout;
+	}
+
+	/**
+	 * How often (every how many bytes or chars) data of streaming views is sent to
+	 * client. 0 - only at end of response (and when container buffer is full).
+	 */
+	public int getStreamFlushInterval() {
+		return streamFlushInterval;
+	}
+
+	public void setStreamFlushInterval(int streamFlushInterval) {
+		this.streamFlushInterval = streamFlushInterval;
+	}
+
+	/**
+	 * Compress responses (gzip or deflate, by Accept-Encoding) of string, bytes and
+	 * JSP views?
+	 */
+	public boolean isCompression() {
+		return compression;
+	}
+
+	public void setCompression(boolean compression) {
+		this.compression = compression;
+	}
+
+	/**
+	 * Minimum size of response (in bytes) to compress
+	 */
+	public int getCompressionMinSize() {
+		return compressionMinSize;
+	}
+
+	public void setCompressionMinSize(int compressionMinSize) {
+		this.compressionMinSize = compressionMinSize;
+	}
+
+	/**
+	 * Compressed MIME types (lower case), e.g. {@code application/json} or
+	 * {@code text/*}
+	 */
+	public Set<String> getCompressionMimeTypes() {
+		return compressionMimeTypes;
+	}
+
+	public void setCompressionMimeTypes(Set<String> compressionMimeTypes) {
+		this.compressionMimeTypes = compressionMimeTypes;
+	}
+
+	/**
+	 * Generate ETag from content of string and bytes views, and answer matching
+	 * If-None-Match with 304?
+	 */
+	public boolean isAutoEtag() {
+		return autoEtag;
+	}
+
+	public void setAutoEtag(boolean autoEtag) {
+		this.autoEtag = autoEtag;
+	}
+
+	/**
+	 * Generate weak ETags? (same tag for compressed and uncompressed content)
+	 */
+	public boolean isWeakEtag() {
+		return weakEtag;
+	}
+
+	public void setWeakEtag(boolean weakEtag) {
+		this.weakEtag = weakEtag;
+	}
+
+	/**
+	 * Maximum size of response cache (controllers with {@link CachedResponse}), in
+	 * bytes. Larger responses than 1/8 of this size are not cached.
+	 */
+	public long getResponseCacheSize() {
+		return responseCacheSize;
+	}
+
+	public void setResponseCacheSize(long responseCacheSize) {
+		this.responseCacheSize = responseCacheSize;
+	}
+
+	/**
+	 * Development mode - JSP files are looked up on every request (without cache)
+	 */
+	public boolean isDevMode() {
+		return devMode;
+	}
+
+	public void setDevMode(boolean devMode) {
+		this.devMode = devMode;
+	}
+
+	/**
+	 * Check JSP files declared by controllers ({@link JspFiles}) at startup?
+	 * Missing file fails initialization of dispatcher servlet.
+	 */
+	public boolean isValidateJsp() {
+		return validateJsp;
+	}
+
+	public void setValidateJsp(boolean validateJsp) {
+		this.validateJsp = validateJsp;
+	}
+
+	/**
+	 * Maximum size of buffered JSON response - smaller responses are sent with
+	 * Content-Length (and ETag, if enabled), larger ones are streamed
+	 */
+	public int getJsonBufferSize() {
+		return jsonBufferSize;
+	}
+
+	public void setJsonBufferSize(int jsonBufferSize) {
+		this.jsonBufferSize = jsonBufferSize;
+	}
+
 	/**
 	 * User's own properties, for use in application
 	 */
@@ -21,6 +21,7 @@ import javax.servlet.annotation.HandlesTypes;
 public class WebFrameworkMainInitializer implements ServletContainerInitializer {
 	static final String CTX_CONFIG_ATTR = "jss.webframework.config";
 	static final String CTX_TRANSLATIONS_ATTR = "jss.webframework.translations";
+	static final String CTX_JSP_ATTR = "jss.webframework.jsp";
 
 	public WebFrameworkMainInitializer() {
 
@@ -55,6 +56,7 @@ public class WebFrameworkMainInitializer implements ServletContainerInitializer
 
 		// set attributes to context - for read in whole app
 		ctx.setAttribute(CTX_CONFIG_ATTR, config);
+		ctx.setAttribute(CTX_JSP_ATTR, new JspResolver(ctx, config));
 
 		// initialize i18n support
 		if (config.getLangDir() != null) {